@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Corpora used by the benchmarks: rules of the github/gitignore templates (<code>resources/gitignore</code> submodule)
+ * and synthetic paths of the monorepo. If templates are not checked out, {@link #FALLBACK_TEMPLATE} is used.
+ * Templates directory can be changed with the <code>corpus.templates</code> system property.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public final class BenchmarkCorpus {
+    /** Default templates directory. */
+    private static final String TEMPLATES = "resources/gitignore";
+
+    /** Template used if templates directory does not exist. */
+    private static final String FALLBACK_TEMPLATE = "resources/sample.gitignore";
+
+    /** Directory names used for the synthetic paths. */
+    private static final String[] DIRECTORIES = {
+            "src", "main", "java", "test", "resources", "node_modules", "build", "target", "lib", "vendor", "packages",
+            "services", "web", "api", "core", "util", "docs", "dist", "out", ".idea", "gen", "bin", "obj", "tmp",
+            "__pycache__", ".gradle", "assets", "config", "scripts", "internal",
+    };
+
+    /** File names used for the synthetic paths. */
+    private static final String[] NAMES = {
+            "Main", "index", "app", "utils", "README", "package", "build", "settings", "module", "debug", "Service",
+            "Controller", "test_helper", "config", "local", ".DS_Store", "Thumbs", "npm-debug", "data", "core",
+    };
+
+    /** File extensions used for the synthetic paths. */
+    private static final String[] EXTENSIONS = {
+            ".java", ".class", ".js", ".min.js", ".ts", ".log", ".pyc", ".o", ".so", ".tmp", ".json", ".xml", ".iml",
+            ".md", ".swp", ".jar", ".zip", ".tar.gz", "~", "",
+    };
+
+    /** Private constructor to prevent creating {@link BenchmarkCorpus} instance. */
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Loads rules of all templates.
+     *
+     * @return templates rules
+     */
+    @NotNull
+    public static List<List<String>> loadTemplates() {
+        final List<List<String>> templates = new ArrayList<List<String>>();
+        final File directory = new File(System.getProperty("corpus.templates", TEMPLATES));
+        final List<File> files = new ArrayList<File>();
+        collectTemplates(directory, files);
+        if (files.isEmpty()) {
+            files.add(new File(FALLBACK_TEMPLATE));
+        }
+        Collections.sort(files);
+
+        for (File file : files) {
+            final List<String> rules = loadRules(file);
+            if (!rules.isEmpty()) {
+                templates.add(rules);
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Loads rules of all templates as a single list.
+     *
+     * @return rules
+     */
+    @NotNull
+    public static List<String> loadRules() {
+        final List<String> rules = new ArrayList<String>();
+        for (List<String> template : loadTemplates()) {
+            rules.addAll(template);
+        }
+        return rules;
+    }
+
+    /**
+     * Checks if rule is negated.
+     *
+     * @param rule template rule
+     * @return rule is negated
+     */
+    public static boolean isNegated(@NotNull String rule) {
+        return rule.startsWith("!");
+    }
+
+    /**
+     * Returns glob of the rule without negation mark.
+     *
+     * @param rule template rule
+     * @return glob
+     */
+    @NotNull
+    public static String getGlob(@NotNull String rule) {
+        return isNegated(rule) ? rule.substring(1) : rule;
+    }
+
+    /**
+     * Generates synthetic relative paths of the monorepo. Paths of directories end with slash.
+     *
+     * @param count amount of paths
+     * @param seed  random seed
+     * @return paths
+     */
+    @NotNull
+    public static String[] generatePaths(int count, long seed) {
+        final Random random = new Random(seed);
+        final String[] paths = new String[count];
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.setLength(0);
+            builder.append("module-").append(random.nextInt(200));
+
+            final int depth = 1 + random.nextInt(8);
+            for (int j = 0; j < depth; j++) {
+                builder.append('/').append(DIRECTORIES[random.nextInt(DIRECTORIES.length)]);
+            }
+
+            if (random.nextInt(5) == 0) {
+                builder.append('/');
+            } else {
+                builder.append('/').append(NAMES[random.nextInt(NAMES.length)])
+                        .append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            }
+            paths[i] = builder.toString();
+        }
+        return paths;
+    }
+
+    /**
+     * Collects template files recursively.
+     *
+     * @param directory directory to search
+     * @param files     found files
+     */
+    private static void collectTemplates(@NotNull File directory, @NotNull List<File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectTemplates(child, files);
+            } else if (child.getName().endsWith(".gitignore")) {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Reads rules of the template skipping comments and empty lines.
+     *
+     * @param file template file
+     * @return rules
+     */
+    @NotNull
+    private static List<String> loadRules(@NotNull File file) {
+        final List<String> rules = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#") && !line.startsWith("syntax:")) {
+                    rules.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read template: " + file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return rules;
+    }
+}
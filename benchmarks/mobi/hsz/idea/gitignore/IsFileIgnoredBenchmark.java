@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore;
+
+import mobi.hsz.idea.gitignore.util.Glob;
+import mobi.hsz.idea.gitignore.util.GlobMatcher;
+import mobi.hsz.idea.gitignore.util.GlobRuleSet;
+import mobi.hsz.idea.gitignore.util.RelativePath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IDE-free reproduction of the {@link IgnoreManager#isFileIgnored} rules evaluation loop. Root ignore file contains
+ * rules of all github/gitignore templates and nested ignore files placed in the synthetic modules contain rules of
+ * single templates. Ignore files are evaluated from the deepest one and each operation checks the next synthetic path.
+ * VCS roots, outer files and the statuses cache are not covered.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IsFileIgnoredBenchmark {
+    /** Root directory of the synthetic project. */
+    private static final String ROOT = "/repo";
+
+    /** Amount of the synthetic paths. */
+    @Param({"100000", "1000000"})
+    public int pathsCount;
+
+    /** Amount of the nested ignore files. */
+    @Param({"10", "200"})
+    public int nestedIgnoreFiles;
+
+    /** Synthetic paths. */
+    private String[] paths;
+
+    /** Ignore files sorted by depth, starting from the deepest one. */
+    private IgnoreFile[] ignoreFiles;
+
+    /** Index of the next path. */
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        paths = BenchmarkCorpus.generatePaths(pathsCount, 42);
+
+        final List<List<String>> templates = BenchmarkCorpus.loadTemplates();
+        final List<IgnoreFile> files = new ArrayList<IgnoreFile>();
+        files.add(new IgnoreFile(ROOT, BenchmarkCorpus.loadRules()));
+
+        final Random random = new Random(42);
+        for (int i = 0; i < nestedIgnoreFiles; i++) {
+            final String directory = ROOT + "/module-" + random.nextInt(200) + (random.nextBoolean() ? "/src" : "");
+            files.add(new IgnoreFile(directory, templates.get(random.nextInt(templates.size()))));
+        }
+
+        Collections.sort(files, new Comparator<IgnoreFile>() {
+            @Override
+            public int compare(IgnoreFile o1, IgnoreFile o2) {
+                return o2.depth - o1.depth;
+            }
+        });
+        ignoreFiles = files.toArray(new IgnoreFile[files.size()]);
+    }
+
+    @Benchmark
+    public boolean isFileIgnored() {
+        if (cursor == paths.length) {
+            cursor = 0;
+        }
+        final String path = paths[cursor++];
+        final String fullPath = RelativePath.getFullPath(ROOT + "/" + path, path.endsWith("/"));
+
+        for (IgnoreFile file : ignoreFiles) {
+            if (!fullPath.startsWith(file.directory)) {
+                continue;
+            }
+            final RelativePath relativePath = RelativePath.create(fullPath, file.directory);
+            if (relativePath == null) {
+                continue;
+            }
+            final int index = file.ruleSet.match(relativePath);
+            if (index > -1) {
+                return !file.ruleSet.isNegated(index);
+            }
+        }
+        return false;
+    }
+
+    /** Ignore file placed in the directory with its compiled rules. */
+    private static class IgnoreFile {
+        /** Path of the directory containing ignore file. */
+        private final String directory;
+
+        /** Depth of the {@link #directory}. */
+        private final int depth;
+
+        /** Compiled rules. */
+        private final GlobRuleSet ruleSet = new GlobRuleSet();
+
+        /**
+         * Constructor.
+         *
+         * @param directory directory path
+         * @param rules     template rules
+         */
+        IgnoreFile(String directory, List<String> rules) {
+            this.directory = directory;
+            this.depth = directory.split("/").length;
+            for (String rule : rules) {
+                final GlobMatcher matcher = Glob.createMatcher(BenchmarkCorpus.getGlob(rule),
+                        IgnoreBundle.Syntax.GLOB, false);
+                if (matcher != null) {
+                    ruleSet.add(matcher, BenchmarkCorpus.isNegated(rule));
+                }
+            }
+        }
+    }
+}
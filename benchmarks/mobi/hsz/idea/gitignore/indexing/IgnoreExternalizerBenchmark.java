@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.util.ThrowableRunnable;
+import mobi.hsz.idea.gitignore.BenchmarkCorpus;
+import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how indexing of many ignore files scales with the amount of indexing threads - each operation reads
+ * the rules of the next ignore file with {@link IgnoreLexerIndexer}, writes the entry with
+ * {@link IgnoreEntryOccurrence#serialize(DataOutput, IgnoreEntryOccurrence)} and reads it back with
+ * {@link IgnoreEntryOccurrence#deserialize(DataInput)}, like the IDE does during the full reindex. Throughput of
+ * the {@link #indexAllThreads()} should be close to the {@link #indexSingleThread()} one multiplied by the amount of
+ * cores. Ignore files contain rules of the single github/gitignore templates. Light files have no IDs, so they
+ * are written with their URLs and are not resolved when read, but the whole entry is still consumed.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IgnoreExternalizerBenchmark {
+    /** Contents of the ignore files. */
+    private String[] contents;
+
+    /** Ignore files. */
+    private LightVirtualFile[] files;
+
+    /** Light project fixture that provides the application used by the deserialization. */
+    private IdeaProjectTestFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final List<List<String>> templates = BenchmarkCorpus.loadTemplates();
+        contents = new String[templates.size()];
+        files = new LightVirtualFile[templates.size()];
+        for (int i = 0; i < templates.size(); i++) {
+            final StringBuilder builder = new StringBuilder();
+            for (String rule : templates.get(i)) {
+                builder.append(rule).append('\n');
+            }
+            contents[i] = builder.toString();
+            files[i] = new LightVirtualFile(".gitignore", GitFileType.INSTANCE, contents[i]);
+        }
+
+        fixture = IdeaTestFixtureFactory.getFixtureFactory().createLightFixtureBuilder().getFixture();
+        EdtTestUtil.runInEdtAndWait(new ThrowableRunnable<Exception>() {
+            @Override
+            public void run() throws Exception {
+                fixture.setUp();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        EdtTestUtil.runInEdtAndWait(new ThrowableRunnable<Exception>() {
+            @Override
+            public void run() throws Exception {
+                fixture.tearDown();
+            }
+        });
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IgnoreEntryOccurrence indexSingleThread(Cursor cursor) throws IOException {
+        return index(cursor.next(files.length));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IgnoreEntryOccurrence indexAllThreads(Cursor cursor) throws IOException {
+        return index(cursor.next(files.length));
+    }
+
+    /**
+     * Indexes the ignore file and writes the entry to the index storage and reads it back.
+     *
+     * @param index index of the ignore file
+     * @return read entry
+     * @throws IOException I/O exception
+     */
+    private IgnoreEntryOccurrence index(int index) throws IOException {
+        final IgnoreEntryOccurrence entry = IgnoreLexerIndexer.map(files[index], GitFileType.INSTANCE, contents[index]);
+        if (entry == null) {
+            return null;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IgnoreEntryOccurrence.serialize(new DataOutputStream(bytes), entry);
+        return IgnoreEntryOccurrence.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /** Per-thread index of the next ignore file. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        /** Index of the next ignore file. */
+        private int index;
+
+        /**
+         * Returns index of the next ignore file.
+         *
+         * @param count amount of the ignore files
+         * @return index
+         */
+        int next(int count) {
+            if (index == count) {
+                index = 0;
+            }
+            return index++;
+        }
+    }
+}
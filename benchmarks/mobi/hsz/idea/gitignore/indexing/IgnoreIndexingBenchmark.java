@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.util.ThrowableRunnable;
+import mobi.hsz.idea.gitignore.BenchmarkCorpus;
+import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
+import mobi.hsz.idea.gitignore.lang.kind.GitLanguage;
+import mobi.hsz.idea.gitignore.psi.IgnoreFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares indexing of the large ignore file with {@link IgnoreLexerIndexer} and with the PSI tree visited by
+ * {@link IgnoreFilesIndex#mapPsi(com.intellij.openapi.vfs.VirtualFile, IgnoreFile)}. Ignore file is generated from
+ * the rules of all github/gitignore templates with comments and sections in between. PSI path runs in the light
+ * project fixture, so it covers parsing and AST building done by the IDE. Allocation rate is reported with
+ * the <code>gc</code> profiler enabled in the <code>jmh</code> task.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IgnoreIndexingBenchmark {
+    /** Amount of the lines of the generated ignore file. */
+    @Param({"1000", "50000"})
+    public int linesCount;
+
+    /** Content of the generated ignore file. */
+    private String content;
+
+    /** Generated ignore file. */
+    private LightVirtualFile file;
+
+    /** Light project fixture used by the PSI path. */
+    private IdeaProjectTestFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final List<String> rules = BenchmarkCorpus.loadRules();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < linesCount; i++) {
+            if (i % 100 == 0) {
+                builder.append("## Section ").append(i / 100).append('\n');
+            } else if (i % 10 == 0) {
+                builder.append("# Comment ").append(i).append('\n');
+            } else {
+                builder.append(rules.get(i % rules.size())).append('\n');
+            }
+        }
+        content = builder.toString();
+        file = new LightVirtualFile(".gitignore", GitFileType.INSTANCE, content);
+
+        fixture = IdeaTestFixtureFactory.getFixtureFactory().createLightFixtureBuilder().getFixture();
+        EdtTestUtil.runInEdtAndWait(new ThrowableRunnable<Exception>() {
+            @Override
+            public void run() throws Exception {
+                fixture.setUp();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        EdtTestUtil.runInEdtAndWait(new ThrowableRunnable<Exception>() {
+            @Override
+            public void run() throws Exception {
+                fixture.tearDown();
+            }
+        });
+    }
+
+    @Benchmark
+    public IgnoreEntryOccurrence lexer() {
+        return IgnoreLexerIndexer.map(file, GitFileType.INSTANCE, content);
+    }
+
+    @Benchmark
+    public IgnoreEntryOccurrence psi() {
+        return ApplicationManager.getApplication().runReadAction(new Computable<IgnoreEntryOccurrence>() {
+            @Override
+            public IgnoreEntryOccurrence compute() {
+                final IgnoreFile ignoreFile = (IgnoreFile) PsiFileFactory.getInstance(fixture.getProject())
+                        .createFileFromText(".gitignore", GitLanguage.INSTANCE, content);
+                return IgnoreFilesIndex.mapPsi(file, ignoreFile);
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.BenchmarkCorpus;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link Glob} rules compilation over all github/gitignore templates rules. Each operation compiles
+ * all rules - <code>cold</code> variants clear caches before every operation, <code>cached</code> ones measure
+ * the cache lookups.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GlobBenchmark {
+    /** Globs of all templates rules. */
+    private String[] globs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<String> rules = BenchmarkCorpus.loadRules();
+        globs = new String[rules.size()];
+        for (int i = 0; i < globs.length; i++) {
+            globs[i] = BenchmarkCorpus.getGlob(rules.get(i));
+        }
+    }
+
+    /** Clears caches before operations of the <code>cold</code> benchmarks. */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void clear() {
+            Glob.clearCache();
+        }
+    }
+
+    @Benchmark
+    public void createRegexCold(ColdCache cache, Blackhole blackhole) {
+        for (String glob : globs) {
+            blackhole.consume(Glob.createRegex(glob, false));
+        }
+    }
+
+    @Benchmark
+    public void createRegexCached(Blackhole blackhole) {
+        for (String glob : globs) {
+            blackhole.consume(Glob.createRegex(glob, false));
+        }
+    }
+
+    @Benchmark
+    public void createPatternCold(ColdCache cache, Blackhole blackhole) {
+        for (String glob : globs) {
+            blackhole.consume(Glob.createPattern(glob, IgnoreBundle.Syntax.GLOB));
+        }
+    }
+
+    @Benchmark
+    public void createPatternCached(Blackhole blackhole) {
+        for (String glob : globs) {
+            blackhole.consume(Glob.createPattern(glob, IgnoreBundle.Syntax.GLOB));
+        }
+    }
+
+    @Benchmark
+    public void createMatcherCold(ColdCache cache, Blackhole blackhole) {
+        for (String glob : globs) {
+            blackhole.consume(Glob.createMatcher(glob, IgnoreBundle.Syntax.GLOB, false));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.BenchmarkCorpus;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of {@link MatcherUtil#match} over synthetic monorepo paths. Each operation matches the next path against
+ * all github/gitignore templates rules, so with large path lists the results cache is mostly missed like during
+ * the project tree traversal. Hits and misses of the cache are reported next to the throughput with
+ * {@link CacheCounters}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MatcherUtilBenchmark {
+    /** Amount of the synthetic paths. */
+    @Param({"100000", "1000000"})
+    public int pathsCount;
+
+    /** Synthetic paths. */
+    private String[] paths;
+
+    /** Regex matchers of the rules. */
+    private Matcher[] regexMatchers;
+
+    /** Native matchers of the rules. */
+    private GlobMatcher[] globMatchers;
+
+    /** Index of the next path. */
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        paths = BenchmarkCorpus.generatePaths(pathsCount, 42);
+
+        final List<Matcher> regex = new ArrayList<Matcher>();
+        final List<GlobMatcher> globs = new ArrayList<GlobMatcher>();
+        for (String rule : BenchmarkCorpus.loadRules()) {
+            final String glob = BenchmarkCorpus.getGlob(rule);
+            final Pattern pattern = Glob.createPattern(glob, IgnoreBundle.Syntax.GLOB);
+            if (pattern != null) {
+                regex.add(pattern.matcher(""));
+            }
+            final GlobMatcher matcher = Glob.createMatcher(glob, IgnoreBundle.Syntax.GLOB, false);
+            if (matcher != null) {
+                globs.add(matcher);
+            }
+        }
+        regexMatchers = regex.toArray(new Matcher[regex.size()]);
+        globMatchers = globs.toArray(new GlobMatcher[globs.size()]);
+    }
+
+    /** Hits and misses of the {@link MatcherUtil} results cache in the current iteration. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+        /** Cache hits. */
+        public long hits;
+
+        /** Cache misses. */
+        public long misses;
+
+        /** Cache hits before the iteration. */
+        private long initialHits;
+
+        /** Cache misses before the iteration. */
+        private long initialMisses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            initialHits = MatcherUtil.getCacheHits();
+            initialMisses = MatcherUtil.getCacheMisses();
+            hits = 0;
+            misses = 0;
+        }
+
+        /** Updates counters with the cache statistics. */
+        void update() {
+            hits = MatcherUtil.getCacheHits() - initialHits;
+            misses = MatcherUtil.getCacheMisses() - initialMisses;
+        }
+    }
+
+    @Benchmark
+    public void matchRegex(CacheCounters counters, Blackhole blackhole) {
+        final String path = nextPath();
+        for (Matcher matcher : regexMatchers) {
+            blackhole.consume(MatcherUtil.match(matcher, path));
+        }
+        counters.update();
+    }
+
+    @Benchmark
+    public void matchGlobMatcher(CacheCounters counters, Blackhole blackhole) {
+        final String path = nextPath();
+        for (GlobMatcher matcher : globMatchers) {
+            blackhole.consume(MatcherUtil.match(matcher, path));
+        }
+        counters.update();
+    }
+
+    @Benchmark
+    public void matchGlobMatcherUncached(Blackhole blackhole) {
+        final String path = nextPath();
+        for (GlobMatcher matcher : globMatchers) {
+            blackhole.consume(matcher.matches(path));
+        }
+    }
+
+    /**
+     * Returns next path from the list.
+     *
+     * @return path
+     */
+    private String nextPath() {
+        if (cursor == paths.length) {
+            cursor = 0;
+        }
+        return paths[cursor++];
+    }
+}
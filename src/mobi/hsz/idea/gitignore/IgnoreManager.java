@@ -26,12 +26,15 @@ package mobi.hsz.idea.gitignore;
 
 import com.intellij.ide.projectView.ProjectView;
 import com.intellij.ide.projectView.impl.AbstractProjectViewPane;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FileStatusManager;
@@ -39,8 +42,12 @@ import com.intellij.openapi.vcs.ProjectLevelVcsManager;
 import com.intellij.openapi.vcs.VcsListener;
 import com.intellij.openapi.vcs.VcsRoot;
 import com.intellij.openapi.vfs.*;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
 import com.intellij.util.Function;
-import com.intellij.util.Time;
 import com.intellij.util.containers.ConcurrentWeakHashMap;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBusConnection;
@@ -50,8 +57,10 @@ import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
 import mobi.hsz.idea.gitignore.file.type.kind.GitExcludeFileType;
 import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
 import mobi.hsz.idea.gitignore.indexing.ExternalIndexableSetContributor;
+import mobi.hsz.idea.gitignore.indexing.IgnoreDirectoryIndex;
 import mobi.hsz.idea.gitignore.indexing.IgnoreEntryOccurrence;
 import mobi.hsz.idea.gitignore.indexing.IgnoreFilesIndex;
+import mobi.hsz.idea.gitignore.indexing.IgnoreIndexStorage;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.settings.IgnoreSettings;
 import mobi.hsz.idea.gitignore.util.*;
@@ -60,11 +69,10 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static mobi.hsz.idea.gitignore.IgnoreManager.RefreshTrackedIgnoredListener.TRACKED_IGNORED_REFRESH;
 import static mobi.hsz.idea.gitignore.IgnoreManager.TrackedIgnoredListener.TRACKED_IGNORED;
@@ -85,6 +93,9 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                 }
             });
 
+    /** Amount of the changed statuses above which all of the statuses are refreshed at once. */
+    private static final int STATUSES_DELTA_THRESHOLD = 500;
+
     /** {@link VirtualFileManager} instance. */
     @NotNull
     private final VirtualFileManager virtualFileManager;
@@ -109,27 +120,48 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
     @Nullable
     private MessageBusConnection messageBus;
 
-    /** List of the files that are ignored and also tracked by Git. */
-    @NotNull
-    private final ConcurrentMap<VirtualFile, VcsRoot> confirmedIgnoredFiles =
-            new ConcurrentWeakHashMap<VirtualFile, VcsRoot>();
-
-    /** List of the new files that were not covered by {@link #confirmedIgnoredFiles} yet. */
+    /** Current {@link State} of the manager, replaced as a whole on every change. */
     @NotNull
-    private final HashSet<VirtualFile> notConfirmedIgnoredFiles = new HashSet<VirtualFile>();
+    private final AtomicReference<State> state = new AtomicReference<State>(new State(
+            Collections.<VcsRoot>emptyList(),
+            new ConcurrentWeakHashMap<VirtualFile, VcsRoot>(),
+            false
+    ));
 
-    /** References to the indexed {@link IgnoreEntryOccurrence}. */
+    /** References to the indexed {@link IgnoreEntryOccurrence} grouped by directories. */
     @NotNull
-    private final CachedConcurrentMap<IgnoreFileType, Collection<IgnoreEntryOccurrence>> cachedIgnoreFilesIndex =
+    private final CachedConcurrentMap<IgnoreFileType, IgnoreDirectoryIndex> cachedIgnoreFilesIndex =
             CachedConcurrentMap.create(
-                    new CachedConcurrentMap.DataFetcher<IgnoreFileType, Collection<IgnoreEntryOccurrence>>() {
+                    new CachedConcurrentMap.DataFetcher<IgnoreFileType, IgnoreDirectoryIndex>() {
                         @Override
-                        public Collection<IgnoreEntryOccurrence> fetch(@NotNull IgnoreFileType key) {
-                            return IgnoreFilesIndex.getEntries(myProject, key);
+                        public IgnoreDirectoryIndex fetch(@NotNull IgnoreFileType key) {
+                            return IgnoreDirectoryIndex.create(myProject, key);
                         }
                     }
             );
 
+    /** Storage of the indexed entries used to warm-start {@link #warmIndex}. */
+    @NotNull
+    private final IgnoreIndexStorage indexStorage;
+
+    /** Indexes restored from {@link #indexStorage} used in the dumb mode until indexing is finished. */
+    @Nullable
+    private volatile Map<IgnoreFileType, IgnoreDirectoryIndex> warmIndex;
+
+    /**
+     * Generation of {@link #warmIndex} incremented when it is dropped, so the index restored in background is not
+     * published if ignore files changed or indexing finished in the meantime. Guarded with {@link #warmIndexLock}.
+     */
+    private long warmIndexGeneration;
+
+    /** Lock guarding publication of {@link #warmIndex}. */
+    @NotNull
+    private final Object warmIndexLock = new Object();
+
+    /** Entries stored in {@link #indexStorage} are outdated and have to be saved with {@link #saveWarmIndex()}. */
+    @NotNull
+    private final AtomicBoolean warmIndexChanged = new AtomicBoolean(true);
+
     /** References to the indexed outer files. */
     @NotNull
     private final CachedConcurrentMap<IgnoreFileType, Collection<VirtualFile>> cachedOuterFiles =
@@ -142,95 +174,210 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                     }
             );
 
+    /** Cache of the files statuses invalidated when the relevant ignore file or VCS mapping changes. */
+    @NotNull
+    private final DirectoryStatusCache statusCache = new DirectoryStatusCache();
+
+    /**
+     * Chains of the rule sets built for the resolved entries. Directories placed under the same ignore files share
+     * the chain, and entries of the modified files are not equal to the previous ones, so stale chains are evicted.
+     */
+    @NotNull
+    private final ConcurrentLruCache<List<Pair<IgnoreEntryOccurrence, String>>, GlobRuleChain> ruleChains =
+            new ConcurrentLruCache<List<Pair<IgnoreEntryOccurrence, String>>, GlobRuleChain>(256);
+
+    /** Snapshot of the files statuses computed in background. */
+    @NotNull
+    private final IgnoredFilesSnapshot snapshot = new IgnoredFilesSnapshot();
+
+    /** Files and directories which statuses have to be computed again in {@link #snapshot}. */
     @NotNull
-    private final ExpiringMap<VirtualFile, Boolean> expiringStatusCache =
-            new ExpiringMap<VirtualFile, Boolean>(Time.SECOND);
+    private final Set<VirtualFile> snapshotQueue = ContainerUtil.newConcurrentSet();
+
+    /** {@link #snapshot} is being refreshed. */
+    @NotNull
+    private final AtomicBoolean snapshotRefreshing = new AtomicBoolean();
+
+    /** Ignore files with modified content which rules have to be recompiled with the {@link #snapshot} refresh. */
+    @NotNull
+    private final ConcurrentMap<VirtualFile, IgnoreFileType> changedIgnoreFiles = ContainerUtil.newConcurrentMap();
 
     /** {@link FileStatusManager#fileStatusesChanged()} method wrapped with {@link Debounced}. */
     private final Debounced debouncedStatusesChanged = new Debounced(1000) {
         @Override
         protected void task(@Nullable Object argument) {
-            expiringStatusCache.clear();
-            cachedIgnoreFilesIndex.clear();
             statusManager.fileStatusesChanged();
         }
     };
 
-    /** {@link FileStatusManager#fileStatusesChanged()} method wrapped with {@link Debounced}. */
-    private final Debounced<Boolean> debouncedRefreshTrackedIgnores = new Debounced<Boolean>(5000) {
+    /** Ignored statuses reported to the {@link FileStatusManager} with {@link #reportStatus(VirtualFile)}. */
+    @NotNull
+    private final ConcurrentMap<VirtualFile, Boolean> reportedStatuses = ContainerUtil.createConcurrentWeakMap();
+
+    /** Files and directories which reported statuses have to be verified with {@link #debouncedStatusesRefresh}. */
+    @NotNull
+    private final Set<VirtualFile> changedStatusesRoots = ContainerUtil.newConcurrentSet();
+
+    /** All of the statuses have to be refreshed with {@link #debouncedStatusesRefresh}. */
+    @NotNull
+    private final AtomicBoolean changedAllStatuses = new AtomicBoolean();
+
+    /** {@link #refreshChangedStatuses()} method wrapped with {@link Debounced} keeping the index. */
+    private final Debounced debouncedStatusesRefresh = new Debounced(1000) {
         @Override
-        protected void task(@Nullable Boolean refresh) {
-            if (Boolean.TRUE.equals(refresh)) {
-                refreshTrackedIgnoredRunnable.refresh();
-            } else {
-                refreshTrackedIgnoredRunnable.run();
-            }
+        protected void task(@Nullable Object argument) {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                @Override
+                public void run() {
+                    refreshChangedStatuses();
+                }
+            });
         }
     };
 
-    /** Scheduled feature connected with {@link #debouncedStatusesChanged}. */
+    /**
+     * Refreshes all of the statuses, used when indexing is finished or refreshing is requested. {@link #snapshot} is
+     * kept - it is never computed in the dumb mode and the changes are tracked with the invalidations.
+     */
     @NotNull
-    private final InterruptibleScheduledFuture statusesChangedScheduledFeature;
+    private final Runnable refreshStatusesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            cachedIgnoreFilesIndex.clear();
+            statusCache.clear();
+            statusManager.fileStatusesChanged();
+        }
+    };
 
-    /** Scheduled feature connected with {@link #debouncedRefreshTrackedIgnores}. */
+    /** {@link #refreshStatusesRunnable} invoked with {@link CoalescingScheduler}. */
+    @NotNull
+    private final CoalescingScheduler refreshStatusesScheduler = new CoalescingScheduler(refreshStatusesRunnable, 1000);
+
+    /**
+     * Recompiles rules of the {@link #changedIgnoreFiles}, computes statuses of the files queued in
+     * {@link #snapshotQueue} and publishes them in {@link #snapshot}.
+     */
     @NotNull
-    private final InterruptibleScheduledFuture refreshTrackedIgnoredFeature;
+    private final Runnable snapshotRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!snapshotRefreshing.compareAndSet(false, true)) {
+                return;
+            }
 
-    /** {@link IgnoreManager} working flag. */
-    private boolean working;
+            try {
+                while (!myProject.isDisposed() && isEnabled()) {
+                    if (!changedIgnoreFiles.isEmpty()) {
+                        ApplicationManager.getApplication().runReadAction(new Runnable() {
+                            @Override
+                            public void run() {
+                                recompileChangedIgnoreFiles();
+                            }
+                        });
+                    }
 
-    /** List of available VCS roots for the current project. */
+                    final VirtualFile file = ContainerUtil.getFirstItem(snapshotQueue);
+                    if (file == null) {
+                        break;
+                    }
+                    if (!snapshotQueue.remove(file) || isQueuedAncestor(file)) {
+                        continue;
+                    }
+
+                    if (!refreshSnapshot(file)) {
+                        snapshotQueue.add(file);
+                        DumbService.getInstance(myProject).runWhenSmart(debouncedSnapshotRefresh);
+                        return;
+                    }
+                }
+            } finally {
+                snapshotRefreshing.set(false);
+            }
+        }
+    };
+
+    /** {@link #snapshotRefreshRunnable} invoked on the pooled thread, wrapped with {@link Debounced}. */
+    private final Debounced debouncedSnapshotRefresh = new Debounced(1000) {
+        @Override
+        protected void task(@Nullable Object argument) {
+            ApplicationManager.getApplication().executeOnPooledThread(snapshotRefreshRunnable);
+        }
+    };
+
+    /** {@link #refreshTrackedIgnoredRunnable} invoked with {@link CoalescingScheduler}. */
     @NotNull
-    private Collection<VcsRoot> vcsRoots = ContainerUtil.newArrayList();
+    private final CoalescingScheduler refreshTrackedIgnoredScheduler;
 
     /** {@link VirtualFileListener} instance to check if file's content was changed. */
     @NotNull
     private final VirtualFileListener virtualFileListener = new VirtualFileAdapter() {
         @Override
         public void contentsChanged(@NotNull VirtualFileEvent event) {
-            handleEvent(event);
+            final FileType fileType = event.getFile().getFileType();
+            if (fileType instanceof IgnoreFileType) {
+                changedIgnoreFiles.put(event.getFile(), (IgnoreFileType) fileType);
+                warmIndexChanged.set(true);
+                dropWarmIndex();
+                debouncedSnapshotRefresh.run();
+            }
         }
 
         @Override
         public void fileCreated(@NotNull VirtualFileEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-//            debouncedRefreshTrackedIgnores.run(true);
+        }
+
+        @Override
+        public void beforeFileDeletion(@NotNull VirtualFileEvent event) {
+            // ids of the deleted files are reused, so the new files must not inherit the stored statuses
+            snapshot.remove(event.getFile());
+            statusCache.invalidateFile(event.getFile());
+            MatcherUtil.clearCache();
         }
 
         @Override
         public void fileDeleted(@NotNull VirtualFileEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-//            debouncedRefreshTrackedIgnores.run(true);
         }
 
         @Override
         public void fileMoved(@NotNull VirtualFileMoveEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-//            debouncedRefreshTrackedIgnores.run(true);
+            MatcherUtil.clearCache();
+            invalidateStatuses(event.getOldParent());
+            invalidateFileStatus(event.getFile());
+            final FileType fileType = event.getFile().getFileType();
+            if (fileType instanceof IgnoreFileType) {
+                handleIgnoreFileChange(event.getFile(), event.getOldParent(), (IgnoreFileType) fileType);
+            }
         }
 
         @Override
         public void fileCopied(@NotNull VirtualFileCopyEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-//            debouncedRefreshTrackedIgnores.run(true);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
+            if (!VirtualFile.PROP_NAME.equals(event.getPropertyName())) {
+                return;
+            }
+
+            MatcherUtil.clearCache();
+            invalidateFileStatus(event.getFile());
+            handleEvent(event);
+            final FileType oldFileType = FileTypeManager.getInstance().getFileTypeByFileName(
+                    String.valueOf(event.getOldValue())
+            );
+            if (oldFileType instanceof IgnoreFileType) {
+                handleIgnoreFileChange(event.getFile(), event.getParent(), (IgnoreFileType) oldFileType);
+            }
         }
 
         private void handleEvent(@NotNull VirtualFileEvent event) {
             final FileType fileType = event.getFile().getFileType();
             if (fileType instanceof IgnoreFileType) {
-                cachedIgnoreFilesIndex.remove((IgnoreFileType) fileType);
-                cachedOuterFiles.remove((IgnoreFileType) fileType);
-
-                if (fileType instanceof GitExcludeFileType) {
-                    cachedOuterFiles.remove(GitFileType.INSTANCE);
-                }
-                expiringStatusCache.clear();
-                debouncedStatusesChanged.run();
-                debouncedRefreshTrackedIgnores.run();
+                handleIgnoreFileChange(event.getFile(), event.getParent(), (IgnoreFileType) fileType);
             }
         }
     };
@@ -249,10 +396,14 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                 case OUTER_IGNORE_RULES:
                 case LANGUAGES:
                     IgnoreBundle.ENABLED_LANGUAGES.clear();
+                    warmIndexChanged.set(true);
+                    cachedIgnoreFilesIndex.clear();
+                    cachedOuterFiles.clear();
+                    clearStatuses();
                     if (isEnabled()) {
-                        if (working) {
+                        if (state.get().working) {
                             debouncedStatusesChanged.run();
-                            debouncedRefreshTrackedIgnores.run();
+                            refreshTrackedIgnoredScheduler.request();
                         } else {
                             enable();
                         }
@@ -272,9 +423,20 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
     private final VcsListener vcsListener = new VcsListener() {
         @Override
         public void directoryMappingChanged() {
+            final List<VcsRoot> vcsRoots = ContainerUtil.newArrayList(projectLevelVcsManager.getAllVcsRoots());
+            State current;
+            State updated;
+            do {
+                current = state.get();
+                updated = current.withVcsRoots(vcsRoots);
+            } while (!state.compareAndSet(current, updated));
+
             ExternalIndexableSetContributor.invalidateCache(myProject);
-            vcsRoots.clear();
-            vcsRoots.addAll(ContainerUtil.newArrayList(projectLevelVcsManager.getAllVcsRoots()));
+            cachedIgnoreFilesIndex.clear();
+            if (invalidateVcsRoots(current.vcsRootPaths, updated.vcsRootPaths) |
+                    invalidateVcsRoots(updated.vcsRootPaths, current.vcsRootPaths)) {
+                debouncedStatusesRefresh.run();
+            }
         }
     };
 
@@ -300,102 +462,793 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         this.settings = IgnoreSettings.getInstance();
         this.statusManager = FileStatusManager.getInstance(project);
         this.refreshTrackedIgnoredRunnable = new RefreshTrackedIgnoredRunnable();
-        this.statusesChangedScheduledFeature =
-                new InterruptibleScheduledFuture(debouncedStatusesChanged, 5000, 50);
-        this.statusesChangedScheduledFeature.setTrailing(true);
-        this.refreshTrackedIgnoredFeature =
-                new InterruptibleScheduledFuture(debouncedRefreshTrackedIgnores, 10000, 5);
+        this.refreshTrackedIgnoredScheduler = new CoalescingScheduler(refreshTrackedIgnoredRunnable, 5000);
         this.projectLevelVcsManager = ProjectLevelVcsManager.getInstance(project);
+        this.indexStorage = new IgnoreIndexStorage(project);
     }
 
     /**
-     * Checks if file is ignored.
+     * Checks if file is ignored. File placed in the ignored directory is ignored as well, so the parent directory is
+     * checked first. Only the ignore files placed in the file's ancestors (and the outer ones) are visited - starting
+     * from the deepest one, with the file types walked in reverse order. Rules of each file are checked starting from
+     * the last one, so the first matched rule is decisive. Statuses are cached in {@link #statusCache} until
+     * the relevant ignore file or VCS mapping changes. In the dumb mode, statuses are resolved only if the indexes
+     * restored with {@link #loadWarmIndex()} are available.
      *
      * @param file current file
      * @return file is ignored
      */
     public boolean isFileIgnored(@NotNull final VirtualFile file) {
-        final Boolean cached = expiringStatusCache.get(file);
+        PerformanceStatistics.increment(PerformanceStatistics.Counter.IS_FILE_IGNORED_CALLS);
+        if (!isEnabled()) {
+            return false;
+        }
+
+        final Boolean status = snapshot.get(file);
+        if (status != null) {
+            PerformanceStatistics.increment(PerformanceStatistics.Counter.SNAPSHOT_HITS);
+            return status;
+        }
+        final Boolean cached = statusCache.get(file);
         if (cached != null) {
+            PerformanceStatistics.increment(PerformanceStatistics.Counter.STATUS_CACHE_HITS);
             return cached;
         }
-        if (DumbService.isDumb(myProject) || !isEnabled() || !Utils.isUnder(file, myProject.getBaseDir())) {
+        if (!Utils.isUnder(file, myProject.getBaseDir()) || !isIndexAvailable()) {
             return false;
         }
 
-        boolean ignored = false;
-        boolean matched = false;
-        int valuesCount = 0;
+        PerformanceStatistics.increment(PerformanceStatistics.Counter.STATUS_CACHE_MISSES);
+        final long start = System.nanoTime();
+        final long generation = statusCache.getGeneration();
+        try {
+            final VirtualFile parent = file.getParent();
+            if (parent != null && !parent.equals(myProject.getBaseDir()) && !isVcsRoot(parent) &&
+                    isFileIgnored(parent)) {
+                return statusCache.set(file, true, generation);
+            }
 
-        for (IgnoreFileType fileType : FILE_TYPES) {
+            final VirtualFile vcsRoot = projectLevelVcsManager.getVcsRootFor(file);
+            final List<Pair<IgnoreEntryOccurrence, String>> entries =
+                    parent == null ? Collections.<Pair<IgnoreEntryOccurrence, String>>emptyList() :
+                            resolveEntries(parent, vcsRoot);
+            return statusCache.set(file, match(file, entries), generation);
+        } finally {
+            PerformanceStatistics.record(PerformanceStatistics.Timer.IS_FILE_IGNORED, start);
+        }
+    }
+
+    /**
+     * Checks which of the given files are ignored. Files are grouped by their parent directories and checked with
+     * {@link #classify(VirtualFile, Collection)}.
+     *
+     * @param files files to check
+     * @return ignored files
+     */
+    @NotNull
+    public Set<VirtualFile> classify(@NotNull Collection<VirtualFile> files) {
+        final Map<VirtualFile, List<VirtualFile>> groups = ContainerUtil.newLinkedHashMap();
+        final Set<VirtualFile> result = ContainerUtil.newHashSet();
+        for (VirtualFile file : files) {
+            final VirtualFile parent = file.getParent();
+            if (parent == null) {
+                if (isFileIgnored(file)) {
+                    result.add(file);
+                }
+                continue;
+            }
+            List<VirtualFile> group = groups.get(parent);
+            if (group == null) {
+                group = ContainerUtil.newArrayList();
+                groups.put(parent, group);
+            }
+            group.add(file);
+        }
+
+        for (Map.Entry<VirtualFile, List<VirtualFile>> group : groups.entrySet()) {
+            result.addAll(classify(group.getKey(), group.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Checks which of the children of the given directory are ignored. Works like {@link #isFileIgnored(VirtualFile)}
+     * called for each child, but the directory status, its VCS root and the applicable ignore files are resolved only
+     * once for all of the children. Children that are not placed directly in the directory or are VCS roots
+     * themselves are checked separately.
+     *
+     * @param directory parent directory
+     * @param children  children of the directory
+     * @return ignored children
+     */
+    @NotNull
+    public Set<VirtualFile> classify(@NotNull VirtualFile directory, @NotNull Collection<VirtualFile> children) {
+        final Set<VirtualFile> result = ContainerUtil.newHashSet();
+        if (children.isEmpty() || !isEnabled()) {
+            return result;
+        }
+
+        final long generation = statusCache.getGeneration();
+        final boolean available = isIndexAvailable();
+        final VirtualFile baseDir = myProject.getBaseDir();
+        final boolean inProject = baseDir != null && (directory.equals(baseDir) || Utils.isUnder(directory, baseDir));
+        final boolean directoryIgnored = inProject && !directory.equals(baseDir) && !isVcsRoot(directory) &&
+                isFileIgnored(directory);
+        List<Pair<IgnoreEntryOccurrence, String>> entries = null;
+
+        for (VirtualFile child : children) {
+            Boolean cached = snapshot.get(child);
+            if (cached == null) {
+                cached = statusCache.get(child);
+            } else {
+                PerformanceStatistics.increment(PerformanceStatistics.Counter.SNAPSHOT_HITS);
+            }
+
+            final boolean ignored;
+            if (cached != null) {
+                ignored = cached;
+            } else if (!directory.equals(child.getParent()) || isVcsRoot(child)) {
+                ignored = isFileIgnored(child);
+            } else if (!available || !inProject) {
+                ignored = false;
+            } else if (directoryIgnored) {
+                ignored = statusCache.set(child, true, generation);
+            } else {
+                if (entries == null) {
+                    entries = resolveEntries(directory, projectLevelVcsManager.getVcsRootFor(directory));
+                }
+                PerformanceStatistics.increment(PerformanceStatistics.Counter.STATUS_CACHE_MISSES);
+                ignored = statusCache.set(child, match(child, entries), generation);
+            }
+
+            if (ignored) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves entries of the ignore files applicable to the children of the given directory - ignore files placed in
+     * the directory's ancestors (starting from the deepest one) and the outer ones placed outside of them, with
+     * the file types walked in reverse order. Each entry is paired with the path of the directory its rules are
+     * relative to.
+     *
+     * @param directory parent directory of the checked files
+     * @param vcsRoot   VCS root of the checked files
+     * @return entries in the order of checking
+     */
+    @NotNull
+    private List<Pair<IgnoreEntryOccurrence, String>> resolveEntries(@NotNull VirtualFile directory,
+                                                                     @Nullable VirtualFile vcsRoot) {
+        final List<Pair<IgnoreEntryOccurrence, String>> result = ContainerUtil.newArrayList();
+        for (int i = FILE_TYPES.size() - 1; i >= 0; i--) {
+            final IgnoreFileType fileType = FILE_TYPES.get(i);
             if (!IgnoreBundle.ENABLED_LANGUAGES.get(fileType)) {
                 continue;
             }
 
-            final Collection<IgnoreEntryOccurrence> values = cachedIgnoreFilesIndex.get(fileType);
+            final IgnoreDirectoryIndex index = getIndex(fileType);
+            if (index == null || index.isEmpty()) {
+                continue;
+            }
 
-            valuesCount += values.size();
-            for (IgnoreEntryOccurrence value : values) {
-                String relativePath;
-                final VirtualFile entryFile = value.getFile();
-                if (fileType instanceof GitExcludeFileType) {
-                    VirtualFile workingDirectory = GitExcludeFileType.getWorkingDirectory(myProject, entryFile);
-                    if (workingDirectory == null || !Utils.isUnder(file, workingDirectory)) {
-                        continue;
-                    }
-                    relativePath = StringUtil.trimStart(file.getPath(), workingDirectory.getPath());
-                } else {
-                    final VirtualFile vcsRoot = projectLevelVcsManager.getVcsRootFor(file);
-                    if (vcsRoot != null && !Utils.isUnder(entryFile, vcsRoot)) {
-                        if (!cachedOuterFiles.get(fileType).contains(entryFile)) {
-                            continue;
-                        }
-                    }
+            final boolean exclude = fileType instanceof GitExcludeFileType;
+            for (VirtualFile parent = directory; parent != null; parent = parent.getParent()) {
+                final List<IgnoreEntryOccurrence> entries = index.get(parent);
+                if (entries.isEmpty()) {
+                    continue;
+                }
 
-                    final String parentPath = entryFile.getParent().getPath();
-                    if (!StringUtil.startsWith(file.getPath(), parentPath) &&
-                            !ExternalIndexableSetContributor.getAdditionalFiles(myProject).contains(entryFile)) {
-                        continue;
+                final String parentPath = parent.getPath();
+                for (IgnoreEntryOccurrence entry : entries) {
+                    if (exclude || isApplicable(entry.getFile(), vcsRoot, fileType)) {
+                        result.add(Pair.create(entry, parentPath));
                     }
-                    relativePath = StringUtil.trimStart(file.getPath(), parentPath);
                 }
+            }
 
-                relativePath = StringUtil.trimEnd(StringUtil.trimStart(relativePath, "/"), "/");
-                if (StringUtil.isEmpty(relativePath)) {
+            for (IgnoreEntryOccurrence entry : index.getOuterEntries()) {
+                final VirtualFile entryFile = entry.getFile();
+                final VirtualFile parent = entryFile.getParent();
+                if (directory.equals(parent) || Utils.isUnder(directory, parent) ||
+                        !isApplicable(entryFile, vcsRoot, fileType)) {
                     continue;
                 }
+                result.add(Pair.create(entry, parent.getPath()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns index of the given file type. In the dumb mode, {@link IgnoreFilesIndex} cannot be queried, so only
+     * the already cached index or the one restored from {@link #indexStorage} is returned.
+     *
+     * @param fileType ignore file type
+     * @return index or <code>null</code> if it is not available
+     */
+    @Nullable
+    private IgnoreDirectoryIndex getIndex(@NotNull IgnoreFileType fileType) {
+        if (!DumbService.isDumb(myProject)) {
+            return cachedIgnoreFilesIndex.get(fileType);
+        }
+
+        final IgnoreDirectoryIndex index = cachedIgnoreFilesIndex.peek(fileType);
+        if (index != null) {
+            return index;
+        }
+        final Map<IgnoreFileType, IgnoreDirectoryIndex> warmIndex = this.warmIndex;
+        return warmIndex == null ? null : warmIndex.get(fileType);
+    }
+
+    /**
+     * Checks if indexes of all of the enabled file types are available with {@link #getIndex(IgnoreFileType)}.
+     *
+     * @return statuses can be resolved
+     */
+    private boolean isIndexAvailable() {
+        if (!DumbService.isDumb(myProject)) {
+            return true;
+        }
+
+        for (IgnoreFileType fileType : FILE_TYPES) {
+            if (IgnoreBundle.ENABLED_LANGUAGES.get(fileType) && getIndex(fileType) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores {@link #warmIndex} from {@link #indexStorage}, so statuses can be resolved before indexing is finished.
+     * Nothing is restored if any of the stored ignore files was modified or created in the meantime. Statuses of
+     * the stored ignored directories are put in {@link #statusCache}. Storage is read from the disk, so it is invoked
+     * on a pooled thread - index is not published if it was dropped before it was restored.
+     */
+    private void loadWarmIndex() {
+        final long generation;
+        synchronized (warmIndexLock) {
+            generation = warmIndexGeneration;
+        }
+        final long statusGeneration = statusCache.getGeneration();
+
+        final IgnoreIndexStorage.Content content = indexStorage.load();
+        if (content == null) {
+            warmIndexChanged.set(true);
+            return;
+        }
+
+        final Map<IgnoreFileType, IgnoreDirectoryIndex> result = ContainerUtil.newHashMap();
+        for (Map.Entry<IgnoreFileType, List<IgnoreEntryOccurrence>> entry : content.getEntries().entrySet()) {
+            result.put(entry.getKey(), new IgnoreDirectoryIndex(myProject, entry.getKey(), entry.getValue()));
+        }
+
+        synchronized (warmIndexLock) {
+            if (generation != warmIndexGeneration || myProject.isDisposed()) {
+                return;
+            }
+            warmIndex = result;
+            warmIndexChanged.set(false);
+        }
+
+        for (VirtualFile directory : content.getIgnoredDirectories()) {
+            statusCache.set(directory, true, statusGeneration);
+        }
+        refreshStatusesScheduler.request();
+    }
 
-                if (file.isDirectory()) {
-                    relativePath += "/";
+    /**
+     * Stores entries of the enabled file types in {@link #indexStorage} for the next {@link #loadWarmIndex()},
+     * together with the directories collected with {@link #collectDirectories(List, List)}. Entries are fetched and
+     * written only if any of the ignore files changed since they were stored or restored - invoked when indexing is
+     * finished and when the project is closed.
+     */
+    private void saveWarmIndex() {
+        if (!warmIndexChanged.getAndSet(false)) {
+            return;
+        }
+
+        final Map<IgnoreFileType, Collection<IgnoreEntryOccurrence>> entries = ContainerUtil.newLinkedHashMap();
+        final List<VirtualFile> directories = ContainerUtil.newArrayList();
+        final List<VirtualFile> ignoredDirectories = ContainerUtil.newArrayList();
+        final boolean collected = ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+            @Override
+            public Boolean compute() {
+                if (DumbService.isDumb(myProject)) {
+                    return false;
                 }
 
-                for (Pair<Matcher, Boolean> item : value.getItems()) {
-                    if (MatcherUtil.match(item.first, relativePath)) {
-                        ignored = !item.second;
-                        matched = true;
+                for (IgnoreFileType fileType : FILE_TYPES) {
+                    if (IgnoreBundle.ENABLED_LANGUAGES.get(fileType)) {
+                        entries.put(fileType, IgnoreFilesIndex.getEntries(myProject, fileType));
                     }
                 }
+                collectDirectories(directories, ignoredDirectories);
+                return true;
             }
+        });
+
+        if (collected) {
+            warmIndex = null;
+            indexStorage.save(entries, directories, ignoredDirectories);
+        } else {
+            warmIndexChanged.set(true);
         }
+    }
 
-        if (valuesCount > 0 && !ignored && !matched) {
-            final VirtualFile directory = file.getParent();
-            if (directory != null && !directory.equals(myProject.getBaseDir())) {
-                for (VcsRoot vcsRoot : vcsRoots) {
-                    if (directory.equals(vcsRoot.getPath())) {
-                        return expiringStatusCache.set(file, false);
-                    }
+    /**
+     * Collects local directories of the project stored with {@link #indexStorage}, so ignore files created while
+     * the project is closed are detected. Ignored directories are not visited - they are collected separately, so
+     * their statuses are restored with {@link #loadWarmIndex()}.
+     *
+     * @param directories        not ignored directories
+     * @param ignoredDirectories ignored directories placed in the not ignored ones
+     */
+    private void collectDirectories(@NotNull List<VirtualFile> directories,
+                                    @NotNull List<VirtualFile> ignoredDirectories) {
+        final VirtualFile baseDir = myProject.getBaseDir();
+        if (baseDir == null || !baseDir.isInLocalFileSystem()) {
+            return;
+        }
+
+        final FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+        final LinkedList<VirtualFile> queue = ContainerUtil.newLinkedList(baseDir);
+        while (!queue.isEmpty()) {
+            final VirtualFile directory = queue.removeFirst();
+            directories.add(directory);
+            for (VirtualFile child : directory.getChildren()) {
+                if (!child.isDirectory() || child.is(VFileProperty.SYMLINK) ||
+                        fileTypeManager.isFileIgnored(child)) {
+                    continue;
+                }
+                if (isFileIgnored(child)) {
+                    ignoredDirectories.add(child);
+                } else {
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops {@link #warmIndex} when any of the ignore files changes, together with the statuses resolved with it.
+     * {@link #snapshot} is not computed in the dumb mode, so only {@link #statusCache} is cleared.
+     */
+    private void dropWarmIndex() {
+        synchronized (warmIndexLock) {
+            warmIndexGeneration++;
+            if (warmIndex != null) {
+                warmIndex = null;
+                statusCache.clear();
+            }
+        }
+    }
+
+    /**
+     * Looks for the first rule matching given file in the resolved entries. Entries are matched with
+     * the {@link GlobRuleChain} cached for them, so the file's path is scanned for literals once for all of them.
+     * Regex rules are memoized with the file identifier, which is dropped by {@link #virtualFileListener} when
+     * the file's path changes.
+     *
+     * @param file    current file
+     * @param entries entries resolved with {@link #resolveEntries(VirtualFile, VirtualFile)}
+     * @return file is ignored
+     */
+    private boolean match(@NotNull VirtualFile file, @NotNull List<Pair<IgnoreEntryOccurrence, String>> entries) {
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        GlobRuleChain chain = ruleChains.get(entries);
+        if (chain == null) {
+            final GlobRuleSet[] ruleSets = new GlobRuleSet[entries.size()];
+            final String[] directories = new String[entries.size()];
+            for (int i = 0; i < ruleSets.length; i++) {
+                ruleSets[i] = entries.get(i).first.getRuleSet();
+                directories[i] = entries.get(i).second;
+            }
+            chain = new GlobRuleChain(ruleSets, directories);
+            ruleChains.put(entries, chain);
+        }
+        final int fileId = file instanceof VirtualFileWithId ? ((VirtualFileWithId) file).getId() : 0;
+        return chain.match(RelativePath.getFullPath(file.getPath(), file.isDirectory()), fileId) > 0;
+    }
+
+    /**
+     * Checks if rules of the ignore file apply to the files of the given VCS root - file has to be placed in the same
+     * VCS root or has to be one of the outer files.
+     *
+     * @param entryFile ignore file
+     * @param vcsRoot   VCS root of the checked file
+     * @param fileType  type of the ignore file
+     * @return ignore file is applicable
+     */
+    private boolean isApplicable(@NotNull VirtualFile entryFile, @Nullable VirtualFile vcsRoot,
+                                 @NotNull IgnoreFileType fileType) {
+        return vcsRoot == null || Utils.isUnder(entryFile, vcsRoot) ||
+                cachedOuterFiles.get(fileType).contains(entryFile);
+    }
+
+    /**
+     * Checks if given directory is one of the VCS roots.
+     *
+     * @param directory directory to check
+     * @return directory is VCS root
+     */
+    private boolean isVcsRoot(@NotNull VirtualFile directory) {
+        return state.get().vcsRootPaths.contains(directory);
+    }
+
+    /** {@link BulkFileListener} instance collecting files not covered by the tracked and ignored files yet. */
+    @NotNull
+    private final BulkFileListener bulkFileListener = new BulkFileListener.Adapter() {
+        @Override
+        public void after(@NotNull List<? extends VFileEvent> events) {
+            final List<VirtualFile> files = ContainerUtil.newArrayList();
+            for (VFileEvent event : events) {
+                if (event instanceof VFileCreateEvent || event instanceof VFileMoveEvent) {
+                    ContainerUtil.addIfNotNull(files, event.getFile());
+                } else if (event instanceof VFileCopyEvent) {
+                    ContainerUtil.addIfNotNull(files, ((VFileCopyEvent) event).findCreatedFile());
                 }
-                return expiringStatusCache.set(file, isFileIgnored(directory));
             }
+            addNotConfirmedIgnoredFiles(files);
+        }
+    };
+
+    /**
+     * Adds files to the files not covered by the tracked and ignored files yet. New state with the copied set is
+     * published, so files of the whole VFS events batch are added at once.
+     *
+     * @param files new files
+     */
+    private void addNotConfirmedIgnoredFiles(@NotNull Collection<VirtualFile> files) {
+        if (files.isEmpty() || !settings.isInformTrackedIgnored()) {
+            return;
         }
 
-        if (ignored) {
-            statusesChangedScheduledFeature.cancel();
-            refreshTrackedIgnoredFeature.cancel();
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withNotConfirmedIgnoredFiles(files)));
+    }
+
+    /**
+     * Sets working flag in the {@link #state}.
+     *
+     * @param working manager is working
+     */
+    private void setWorking(boolean working) {
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withWorking(working)));
+    }
+
+    /**
+     * Handles change of the ignore file - drops its cached entries and invalidates statuses of the files placed in
+     * the subtree affected by the file's rules. Statuses of all files are invalidated if the ignore file is placed
+     * outside of the project.
+     *
+     * @param file     changed ignore file
+     * @param parent   directory containing ignore file
+     * @param fileType type of the ignore file
+     */
+    private void handleIgnoreFileChange(@NotNull VirtualFile file, @Nullable VirtualFile parent,
+                                        @NotNull IgnoreFileType fileType) {
+        cachedIgnoreFilesIndex.remove(fileType);
+        cachedOuterFiles.remove(fileType);
+        changedIgnoreFiles.remove(file);
+        warmIndexChanged.set(true);
+        dropWarmIndex();
+        MatcherUtil.clearCache();
+
+        VirtualFile directory = parent;
+        if (fileType instanceof GitExcludeFileType) {
+            cachedOuterFiles.remove(GitFileType.INSTANCE);
+            directory = GitExcludeFileType.getWorkingDirectory(myProject, file);
         }
+        invalidateStatuses(directory);
 
-        return expiringStatusCache.set(file, ignored);
+        debouncedStatusesRefresh.run();
+        refreshTrackedIgnoredScheduler.request();
+    }
+
+    /**
+     * Recompiles rules of the ignore files with modified content. Only the changed file's entry is replaced in the
+     * cached index and statuses are invalidated only in the subtrees affected by the added and removed rules - if
+     * the rules are the same as before (i.e. only comments or whitespaces were edited), nothing is invalidated and
+     * tracked ignored files are not refreshed. Invoked with the read access on the pooled thread by
+     * {@link #snapshotRefreshRunnable}, so status checks never query the index. Index cannot be queried in the dumb
+     * mode, so changes are postponed until it ends.
+     */
+    private void recompileChangedIgnoreFiles() {
+        if (changedIgnoreFiles.isEmpty() || DumbService.isDumb(myProject)) {
+            return;
+        }
+
+        boolean changed = false;
+        for (VirtualFile file : ContainerUtil.newArrayList(changedIgnoreFiles.keySet())) {
+            final IgnoreFileType fileType = changedIgnoreFiles.remove(file);
+            if (fileType == null || !file.isValid()) {
+                continue;
+            }
+
+            final IgnoreDirectoryIndex index = cachedIgnoreFilesIndex.peek(fileType);
+            if (index == null) {
+                invalidateStatuses(IgnoreDirectoryIndex.getDirectory(myProject, fileType, file));
+                changed = true;
+                continue;
+            }
+
+            final IgnoreEntryOccurrence previous = index.getEntry(file);
+            final IgnoreEntryOccurrence entry = IgnoreFilesIndex.getEntry(myProject, fileType, file);
+            final VirtualFile directory = index.update(file, entry);
+            if (directory != null) {
+                invalidateChangedRules(directory, IgnoreEntryOccurrence.getChangedRules(previous, entry));
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            debouncedStatusesRefresh.run();
+            refreshTrackedIgnoredScheduler.request();
+        }
+    }
+
+    /**
+     * Invalidates statuses of the files that can be matched by the changed rules. Glob rules anchored to the directory
+     * (with a slash at the beginning or in the middle) can match only the paths starting with their literal segments,
+     * so only the subtree of the longest literal path is invalidated. Any other rule invalidates the whole directory.
+     *
+     * @param directory directory the rules are relative to
+     * @param rules     changed rules with their syntax
+     */
+    private void invalidateChangedRules(@NotNull VirtualFile directory,
+                                        @NotNull List<Pair<String, IgnoreBundle.Syntax>> rules) {
+        final VirtualFile baseDir = myProject.getBaseDir();
+        if (baseDir == null || !(directory.equals(baseDir) || Utils.isUnder(directory, baseDir))) {
+            invalidateStatuses(directory);
+            return;
+        }
+
+        final Set<VirtualFile> files = ContainerUtil.newHashSet();
+        final Set<VirtualFile> directories = ContainerUtil.newHashSet();
+        for (Pair<String, IgnoreBundle.Syntax> rule : rules) {
+            String glob = StringUtil.trimEnd(rule.first, "/");
+            final boolean anchored = rule.second == IgnoreBundle.Syntax.GLOB &&
+                    (StringUtil.startsWithChar(glob, '/') || glob.indexOf('/') > 0);
+            if (!anchored) {
+                invalidateStatuses(directory);
+                return;
+            }
+
+            glob = StringUtil.trimStart(glob, "/");
+            int literal = 0;
+            while (literal < glob.length() && "*?[\\".indexOf(glob.charAt(literal)) < 0) {
+                literal++;
+            }
+            if (literal == glob.length()) {
+                ContainerUtil.addIfNotNull(files, directory.findFileByRelativePath(glob));
+                continue;
+            }
+
+            final int slash = glob.lastIndexOf('/', literal);
+            if (slash <= 0) {
+                invalidateStatuses(directory);
+                return;
+            }
+            ContainerUtil.addIfNotNull(directories, directory.findFileByRelativePath(glob.substring(0, slash)));
+        }
+
+        for (VirtualFile file : files) {
+            invalidateFileStatus(file);
+        }
+        for (VirtualFile file : directories) {
+            invalidateStatuses(file);
+        }
+    }
+
+    /**
+     * Invalidates statuses of the files placed in the given directory. Statuses of all files are invalidated if
+     * the directory is placed outside of the project.
+     *
+     * @param directory directory affected by the ignore file's rules
+     */
+    private void invalidateStatuses(@Nullable VirtualFile directory) {
+        final VirtualFile baseDir = myProject.getBaseDir();
+        if (directory != null && baseDir != null && (directory.equals(baseDir) || Utils.isUnder(directory, baseDir))) {
+            statusCache.invalidate(directory);
+            invalidateSnapshot(directory);
+            changedStatusesRoots.add(directory);
+        } else {
+            clearStatuses();
+            changedAllStatuses.set(true);
+        }
+    }
+
+    /**
+     * Invalidates statuses of the files placed in the VCS roots that are not present in the other roots.
+     *
+     * @param roots  directories of the VCS roots
+     * @param others directories of the other VCS roots
+     * @return any of the roots was invalidated
+     */
+    private boolean invalidateVcsRoots(@NotNull Set<VirtualFile> roots, @NotNull Set<VirtualFile> others) {
+        boolean result = false;
+        for (VirtualFile root : roots) {
+            if (!others.contains(root)) {
+                invalidateStatuses(root);
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates status of the single file.
+     *
+     * @param file file to invalidate
+     */
+    private void invalidateFileStatus(@NotNull VirtualFile file) {
+        statusCache.invalidateFile(file);
+        invalidateSnapshot(file);
+        changedStatusesRoots.add(file);
+    }
+
+    /**
+     * Notifies {@link FileStatusManager} about the files which reported statuses flipped since the last check. Only
+     * the files placed under the {@link #changedStatusesRoots} are verified. If the amount of files to verify or
+     * the amount of flipped statuses exceeds {@link #STATUSES_DELTA_THRESHOLD}, all of the statuses are refreshed.
+     */
+    private void refreshChangedStatuses() {
+        if (changedAllStatuses.getAndSet(false)) {
+            changedStatusesRoots.clear();
+            reportedStatuses.clear();
+            statusManager.fileStatusesChanged();
+            return;
+        }
+
+        final List<VirtualFile> roots = ContainerUtil.newArrayList(changedStatusesRoots);
+        changedStatusesRoots.removeAll(roots);
+        if (roots.isEmpty()) {
+            return;
+        }
+
+        final List<VirtualFile> candidates = ContainerUtil.newArrayList();
+        for (VirtualFile file : reportedStatuses.keySet()) {
+            for (VirtualFile root : roots) {
+                if (file.equals(root) || Utils.isUnder(file, root)) {
+                    candidates.add(file);
+                    break;
+                }
+            }
+        }
+
+        final List<VirtualFile> changed = ContainerUtil.newArrayList();
+        if (candidates.size() <= STATUSES_DELTA_THRESHOLD) {
+            for (VirtualFile file : candidates) {
+                final Boolean reported = reportedStatuses.get(file);
+                if (reported != null && file.isValid() && reported != reportStatus(file)) {
+                    changed.add(file);
+                }
+            }
+        }
+
+        if (candidates.size() > STATUSES_DELTA_THRESHOLD || changed.size() > STATUSES_DELTA_THRESHOLD) {
+            reportedStatuses.clear();
+            statusManager.fileStatusesChanged();
+            return;
+        }
+
+        for (VirtualFile file : changed) {
+            statusManager.fileStatusChanged(file);
+        }
+    }
+
+    /** Invalidates statuses of all files. */
+    private void clearStatuses() {
+        statusCache.clear();
+        snapshot.clear();
+        final VirtualFile baseDir = myProject.getBaseDir();
+        if (baseDir != null) {
+            invalidateSnapshot(baseDir);
+        }
+    }
+
+    /**
+     * Marks file or directory as pending in {@link #snapshot} and queues computation of its statuses.
+     *
+     * @param file file or directory to invalidate
+     */
+    private void invalidateSnapshot(@NotNull VirtualFile file) {
+        snapshot.invalidate(file);
+        snapshotQueue.add(file);
+        debouncedSnapshotRefresh.run();
+    }
+
+    /**
+     * Checks if any of the file's ancestors is queued in {@link #snapshotQueue}.
+     *
+     * @param file file to check
+     * @return ancestor is queued
+     */
+    private boolean isQueuedAncestor(@NotNull VirtualFile file) {
+        for (VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent()) {
+            if (snapshotQueue.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes statuses of the given file and all of its descendants and publishes them in {@link #snapshot} at once.
+     * Directories are read one by one with separate read actions, so write actions are not blocked for long.
+     * Descendants of the ignored directories are skipped - their statuses are resolved with the parent's one.
+     *
+     * @param root file or directory to refresh
+     * @return <code>false</code> if refreshing was interrupted with the dumb mode
+     */
+    private boolean refreshSnapshot(@NotNull final VirtualFile root) {
+        final IgnoredFilesSnapshot.Update update = snapshot.update(root);
+        final LinkedList<VirtualFile> directories = ContainerUtil.newLinkedList();
+
+        final VirtualFile rootParent = root.getParent();
+        if (rootParent != null) {
+            directories.add(rootParent);
+        }
+
+        boolean first = true;
+        while (!directories.isEmpty()) {
+            if (myProject.isDisposed() || DumbService.isDumb(myProject)) {
+                return false;
+            }
+
+            final VirtualFile directory = directories.removeFirst();
+            final boolean rootOnly = first;
+            first = false;
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                @Override
+                public void run() {
+                    if (!directory.isValid() || (rootOnly && !root.isValid())) {
+                        return;
+                    }
+
+                    final List<VirtualFile> children = rootOnly ?
+                            Collections.singletonList(root) : Arrays.asList(directory.getChildren());
+                    final Set<VirtualFile> result = classify(directory, children);
+                    for (VirtualFile child : children) {
+                        if (!(child instanceof VirtualFileWithId)) {
+                            continue;
+                        }
+
+                        final boolean ignored = result.contains(child);
+                        update.set(child, ignored);
+                        if (!ignored && child.isDirectory()) {
+                            directories.add(child);
+                        }
+                    }
+                }
+            });
+        }
+
+        update.publish();
+        return true;
+    }
+
+    /**
+     * Checks if file should be presented as ignored - file is ignored and not tracked. Reported status is stored, so
+     * only the files which status flips are refreshed after ignore files changes.
+     *
+     * @param file current file
+     * @return file should be presented as ignored
+     */
+    public boolean reportStatus(@NotNull VirtualFile file) {
+        final boolean ignored = isFileIgnored(file) && !isFileTracked(file);
+        reportedStatuses.put(file, ignored);
+        return ignored;
     }
 
     /**
@@ -405,8 +1258,9 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
      * @return file is ignored and tracked
      */
     public boolean isFileTracked(@NotNull final VirtualFile file) {
-        return settings.isInformTrackedIgnored() && !notConfirmedIgnoredFiles.contains(file) &&
-                !confirmedIgnoredFiles.isEmpty() && !confirmedIgnoredFiles.containsKey(file);
+        final State state = this.state.get();
+        return settings.isInformTrackedIgnored() && !state.notConfirmedIgnoredFiles.contains(file) &&
+                !state.confirmedIgnoredFiles.isEmpty() && !state.confirmedIgnoredFiles.containsKey(file);
     }
 
     /**
@@ -416,7 +1270,7 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
      */
     @Override
     public void projectOpened() {
-        if (isEnabled() && !working) {
+        if (isEnabled() && !state.get().working) {
             enable();
         }
     }
@@ -428,6 +1282,9 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
      */
     @Override
     public void projectClosed() {
+        if (state.get().working) {
+            saveWarmIndex();
+        }
         disable();
     }
 
@@ -442,12 +1299,21 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
 
     /** Enable manager. */
     private void enable() {
-        if (working) {
+        if (state.get().working) {
             return;
         }
 
-        statusesChangedScheduledFeature.run();
-        refreshTrackedIgnoredFeature.run();
+        clearStatuses();
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!myProject.isDisposed()) {
+                    loadWarmIndex();
+                }
+            }
+        });
+        refreshStatusesScheduler.request();
+        refreshTrackedIgnoredScheduler.request();
         virtualFileManager.addVirtualFileListener(virtualFileListener);
         settings.addListener(settingsListener);
 
@@ -455,23 +1321,54 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         messageBus.subscribe(RefreshStatusesListener.REFRESH_STATUSES, new RefreshStatusesListener() {
             @Override
             public void refresh() {
-                statusesChangedScheduledFeature.run();
+                clearStatuses();
+                refreshStatusesScheduler.request();
             }
         });
         messageBus.subscribe(TRACKED_IGNORED_REFRESH, new RefreshTrackedIgnoredListener() {
             @Override
             public void refresh() {
-                debouncedRefreshTrackedIgnores.run(false);
+                refreshTrackedIgnoredScheduler.request();
+            }
+        });
+        messageBus.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+            @Override
+            public void enteredDumbMode() {
+            }
+
+            @Override
+            public void exitDumbMode() {
+                synchronized (warmIndexLock) {
+                    warmIndexGeneration++;
+                    warmIndex = null;
+                }
+                refreshStatusesScheduler.request();
+                refreshTrackedIgnoredScheduler.request();
+                if (!changedIgnoreFiles.isEmpty()) {
+                    debouncedSnapshotRefresh.run();
+                }
+                if (warmIndexChanged.get()) {
+                    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!myProject.isDisposed()) {
+                                saveWarmIndex();
+                            }
+                        }
+                    });
+                }
             }
         });
         messageBus.subscribe(ProjectLevelVcsManager.VCS_CONFIGURATION_CHANGED, vcsListener);
+        messageBus.subscribe(VirtualFileManager.VFS_CHANGES, bulkFileListener);
 
-        working = true;
+        setWorking(true);
     }
 
     /** Disable manager. */
     private void disable() {
-        statusesChangedScheduledFeature.cancel();
+        refreshStatusesScheduler.cancel();
+        refreshTrackedIgnoredScheduler.cancel();
         virtualFileManager.removeVirtualFileListener(virtualFileListener);
         settings.removeListener(settingsListener);
 
@@ -480,7 +1377,11 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             messageBus = null;
         }
 
-        working = false;
+        snapshotQueue.clear();
+        snapshot.clear();
+        statusCache.clear();
+        reportedStatuses.clear();
+        setWorking(false);
     }
 
     /** Dispose and disable component. */
@@ -491,7 +1392,8 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
     }
 
     /**
-     * Runs {@link #enable()} or {@link #disable()} depending on the passed value.
+     * Runs {@link #enable()} or {@link #disable()} depending on the passed value. Statuses of the files that were
+     * already presented as ignored are refreshed after disabling.
      *
      * @param enable or disable
      */
@@ -500,20 +1402,22 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             enable();
         } else {
             disable();
+            statusManager.fileStatusesChanged();
+            ProjectView.getInstance(myProject).refresh();
         }
     }
 
     /**
-     * Returns tracked and ignored files stored in {@link #confirmedIgnoredFiles}.
+     * Returns tracked and ignored files stored in the current {@link State}.
      *
      * @return tracked and ignored files map
      */
     @NotNull
     public ConcurrentMap<VirtualFile, VcsRoot> getConfirmedIgnoredFiles() {
-        return confirmedIgnoredFiles;
+        return state.get().confirmedIgnoredFiles;
     }
 
-    /** {@link Runnable} implementation to rebuild {@link #confirmedIgnoredFiles}. */
+    /** {@link Runnable} implementation to rebuild tracked and ignored files of the {@link State}. */
     class RefreshTrackedIgnoredRunnable implements Runnable, IgnoreManager.RefreshTrackedIgnoredListener {
         /** Default {@link Runnable} run method that invokes rebuilding with bus event propagating. */
         @Override
@@ -521,14 +1425,14 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             run(false);
         }
 
-        /** Rebuilds {@link #confirmedIgnoredFiles} map in silent mode. */
+        /** Rebuilds tracked and ignored files map in silent mode. */
         @Override
         public void refresh() {
             this.run(true);
         }
 
         /**
-         * Rebuilds {@link #confirmedIgnoredFiles} map.
+         * Rebuilds tracked and ignored files map.
          *
          * @param silent propagate {@link IgnoreManager.TrackedIgnoredListener#TRACKED_IGNORED} event
          */
@@ -537,8 +1441,9 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                 return;
             }
 
+            final State started = state.get();
             final ConcurrentMap<VirtualFile, VcsRoot> result = new ConcurrentWeakHashMap<VirtualFile, VcsRoot>();
-            for (VcsRoot vcsRoot : vcsRoots) {
+            for (VcsRoot vcsRoot : started.vcsRoots) {
                 if (!(vcsRoot instanceof GitRepository)) {
                     continue;
                 }
@@ -554,17 +1459,178 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             if (!silent && !result.isEmpty()) {
                 myProject.getMessageBus().syncPublisher(TRACKED_IGNORED).handleFiles(result);
             }
-            confirmedIgnoredFiles.clear();
-            confirmedIgnoredFiles.putAll(result);
-            notConfirmedIgnoredFiles.clear();
-            debouncedStatusesChanged.run();
+            State current;
+            do {
+                current = state.get();
+            } while (!state.compareAndSet(current,
+                    current.withConfirmedIgnoredFiles(result, started.notConfirmedIgnoredFiles)));
 
+            if (!notifyTrackedFiles(current, result, started.notConfirmedIgnoredFiles)) {
+                return;
+            }
             for (AbstractProjectViewPane pane : Extensions.getExtensions(AbstractProjectViewPane.EP_NAME, myProject)) {
                 if (pane.getTreeBuilder() != null) {
                     pane.getTreeBuilder().queueUpdate();
                 }
             }
         }
+
+        /**
+         * Notifies {@link FileStatusManager} about the files which {@link #isFileTracked(VirtualFile)} result flipped
+         * with the new tracked and ignored files. All of the statuses are refreshed only if the result flipped for
+         * every file or the amount of flipped files exceeds {@link #STATUSES_DELTA_THRESHOLD}.
+         *
+         * @param previous previous state
+         * @param result   new tracked and ignored files
+         * @param covered  not confirmed files covered by the new tracked and ignored files
+         * @return any of the statuses was changed
+         */
+        private boolean notifyTrackedFiles(@NotNull State previous, @NotNull Map<VirtualFile, VcsRoot> result,
+                                           @NotNull Set<VirtualFile> covered) {
+            if (previous.confirmedIgnoredFiles.isEmpty() != result.isEmpty()) {
+                debouncedStatusesChanged.run();
+                return true;
+            }
+
+            final Set<VirtualFile> changed = ContainerUtil.newHashSet();
+            for (VirtualFile file : previous.confirmedIgnoredFiles.keySet()) {
+                if (!result.containsKey(file)) {
+                    changed.add(file);
+                }
+            }
+            for (VirtualFile file : result.keySet()) {
+                if (!previous.confirmedIgnoredFiles.containsKey(file)) {
+                    changed.add(file);
+                }
+            }
+            if (!result.isEmpty()) {
+                for (VirtualFile file : covered) {
+                    if (!result.containsKey(file)) {
+                        changed.add(file);
+                    }
+                }
+            }
+
+            if (changed.size() > STATUSES_DELTA_THRESHOLD) {
+                debouncedStatusesChanged.run();
+            } else {
+                for (VirtualFile file : changed) {
+                    statusManager.fileStatusChanged(file);
+                }
+            }
+            return !changed.isEmpty();
+        }
+    }
+
+    /**
+     * Immutable state of the {@link IgnoreManager} - VCS roots, tracked and ignored files and working flag. Every
+     * change creates a new instance that is swapped atomically, so readers never observe half-updated collections.
+     */
+    private static final class State {
+        /** Available VCS roots for the current project. */
+        @NotNull
+        final List<VcsRoot> vcsRoots;
+
+        /** Directories of the {@link #vcsRoots}. */
+        @NotNull
+        final Set<VirtualFile> vcsRootPaths;
+
+        /** Files that are ignored and also tracked by Git. */
+        @NotNull
+        final ConcurrentMap<VirtualFile, VcsRoot> confirmedIgnoredFiles;
+
+        /** New files that were not covered by {@link #confirmedIgnoredFiles} yet. */
+        @NotNull
+        final Set<VirtualFile> notConfirmedIgnoredFiles;
+
+        /** {@link IgnoreManager} working flag. */
+        final boolean working;
+
+        /**
+         * Constructor.
+         *
+         * @param vcsRoots              available VCS roots
+         * @param confirmedIgnoredFiles files that are ignored and also tracked by Git
+         * @param working               manager is working
+         */
+        State(@NotNull List<VcsRoot> vcsRoots, @NotNull ConcurrentMap<VirtualFile, VcsRoot> confirmedIgnoredFiles,
+              boolean working) {
+            this(vcsRoots, confirmedIgnoredFiles, Collections.<VirtualFile>emptySet(), working);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param vcsRoots                 available VCS roots
+         * @param confirmedIgnoredFiles    files that are ignored and also tracked by Git
+         * @param notConfirmedIgnoredFiles new files that were not covered by confirmed ones yet
+         * @param working                  manager is working
+         */
+        private State(@NotNull List<VcsRoot> vcsRoots,
+                      @NotNull ConcurrentMap<VirtualFile, VcsRoot> confirmedIgnoredFiles,
+                      @NotNull Set<VirtualFile> notConfirmedIgnoredFiles, boolean working) {
+            this.vcsRoots = Collections.unmodifiableList(vcsRoots);
+            this.confirmedIgnoredFiles = confirmedIgnoredFiles;
+            this.notConfirmedIgnoredFiles = notConfirmedIgnoredFiles;
+            this.working = working;
+
+            final Set<VirtualFile> paths = ContainerUtil.newHashSet();
+            for (VcsRoot vcsRoot : vcsRoots) {
+                ContainerUtil.addIfNotNull(paths, vcsRoot.getPath());
+            }
+            this.vcsRootPaths = Collections.unmodifiableSet(paths);
+        }
+
+        /**
+         * Returns new state with the given VCS roots.
+         *
+         * @param vcsRoots available VCS roots
+         * @return new state
+         */
+        @NotNull
+        State withVcsRoots(@NotNull List<VcsRoot> vcsRoots) {
+            return new State(vcsRoots, confirmedIgnoredFiles, notConfirmedIgnoredFiles, working);
+        }
+
+        /**
+         * Returns new state with the given tracked and ignored files. Not confirmed files added after the tracked and
+         * ignored files were requested are kept.
+         *
+         * @param confirmedIgnoredFiles files that are ignored and also tracked by Git
+         * @param covered               not confirmed files at the moment of the request
+         * @return new state
+         */
+        @NotNull
+        State withConfirmedIgnoredFiles(@NotNull ConcurrentMap<VirtualFile, VcsRoot> confirmedIgnoredFiles,
+                                        @NotNull Set<VirtualFile> covered) {
+            final Set<VirtualFile> files = ContainerUtil.newHashSet(notConfirmedIgnoredFiles);
+            files.removeAll(covered);
+            return new State(vcsRoots, confirmedIgnoredFiles, Collections.unmodifiableSet(files), working);
+        }
+
+        /**
+         * Returns new state with the given files added to the not confirmed files.
+         *
+         * @param files new files
+         * @return new state
+         */
+        @NotNull
+        State withNotConfirmedIgnoredFiles(@NotNull Collection<VirtualFile> files) {
+            final Set<VirtualFile> result = ContainerUtil.newHashSet(notConfirmedIgnoredFiles);
+            result.addAll(files);
+            return new State(vcsRoots, confirmedIgnoredFiles, Collections.unmodifiableSet(result), working);
+        }
+
+        /**
+         * Returns new state with the given working flag.
+         *
+         * @param working manager is working
+         * @return new state
+         */
+        @NotNull
+        State withWorking(boolean working) {
+            return new State(vcsRoots, confirmedIgnoredFiles, notConfirmedIgnoredFiles, working);
+        }
     }
 
     /** Listener bounded with {@link TrackedIgnoredListener#TRACKED_IGNORED} topic to inform about new entries. */
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.actions;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.util.CommonDataKeys;
+import mobi.hsz.idea.gitignore.util.PerformanceStatistics;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Action that presents {@link PerformanceStatistics} report and allows to dump it to the IDE log or reset it.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class ShowPerformanceStatisticsAction extends AnAction implements DumbAware {
+    /** Index of the dump button. */
+    private static final int DUMP = 1;
+
+    /** Index of the reset button. */
+    private static final int RESET = 2;
+
+    /** Builds a new instance of {@link ShowPerformanceStatisticsAction}. */
+    public ShowPerformanceStatisticsAction() {
+        super(
+                IgnoreBundle.message("action.showPerformanceStatistics"),
+                IgnoreBundle.message("action.showPerformanceStatistics.description"),
+                null
+        );
+    }
+
+    /**
+     * Shows statistics report dialog.
+     *
+     * @param e action event
+     */
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final int result = Messages.showDialog(
+                e.getData(CommonDataKeys.PROJECT),
+                PerformanceStatistics.getReport(),
+                IgnoreBundle.message("action.showPerformanceStatistics"),
+                new String[]{
+                        IgnoreBundle.message("action.showPerformanceStatistics.close"),
+                        IgnoreBundle.message("action.showPerformanceStatistics.dump"),
+                        IgnoreBundle.message("action.showPerformanceStatistics.reset"),
+                },
+                0,
+                Messages.getInformationIcon()
+        );
+
+        if (result == DUMP) {
+            PerformanceStatistics.dump();
+        } else if (result == RESET) {
+            PerformanceStatistics.reset();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.file.type.kind.GitExcludeFileType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the {@link IgnoreEntryOccurrence} entries of the single {@link IgnoreFileType} grouped by the directory
+ * their rules are relative to, so only the ignore files placed in the ancestors of the checked file are visited.
+ * Entries of the files located outside of the project (i.e. global ignore files) are kept separately, because they
+ * apply to all files. Single entries can be replaced with {@link #update(VirtualFile, IgnoreEntryOccurrence)} when
+ * the ignore file changes - lists are never modified in place, so the index can be read concurrently.
+ * <p>
+ * Index created with {@link #create(Project, IgnoreFileType)} is filled lazily - entries of each directory are
+ * fetched from {@link IgnoreFilesIndex} with the directory-scoped key when the directory is visited for the first
+ * time, so only the ignore files placed in the ancestors of the checked files are read.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class IgnoreDirectoryIndex {
+    /** Current project. */
+    @NotNull
+    private final Project project;
+
+    /** Type of the indexed ignore files. */
+    @NotNull
+    private final IgnoreFileType fileType;
+
+    /** Entries are fetched from {@link IgnoreFilesIndex} when the directory is visited for the first time. */
+    private final boolean lazy;
+
+    /** {@link IgnoreFilesIndex} contains any entries of the {@link #fileType} - used in the lazy mode. */
+    private final boolean indexed;
+
+    /** Entries grouped by directory - entries of the same directory are placed in reverse order of indexing. */
+    @NotNull
+    private final Map<VirtualFile, List<IgnoreEntryOccurrence>> directories = ContainerUtil.newConcurrentMap();
+
+    /** Entries mapped with their ignore files. */
+    @NotNull
+    private final Map<VirtualFile, IgnoreEntryOccurrence> files = ContainerUtil.newConcurrentMap();
+
+    /** Entries of the additional files located outside of the project or <code>null</code> if not fetched yet. */
+    @Nullable
+    private volatile List<IgnoreEntryOccurrence> outerEntries;
+
+    /**
+     * Builds index for the given entries.
+     *
+     * @param project  current project
+     * @param fileType type of the indexed ignore files
+     * @param entries  entries to index
+     */
+    public IgnoreDirectoryIndex(@NotNull Project project, @NotNull IgnoreFileType fileType,
+                                @NotNull List<IgnoreEntryOccurrence> entries) {
+        this.project = project;
+        this.fileType = fileType;
+        this.lazy = false;
+        this.indexed = true;
+        final Set<VirtualFile> additionalFiles = ExternalIndexableSetContributor.getAdditionalFiles(project);
+        final List<IgnoreEntryOccurrence> outerEntries = ContainerUtil.newArrayList();
+
+        for (IgnoreEntryOccurrence entry : ContainerUtil.reverse(entries)) {
+            final VirtualFile file = entry.getFile();
+            final VirtualFile directory = getDirectory(project, fileType, file);
+            if (directory == null) {
+                continue;
+            }
+            files.put(file, entry);
+
+            List<IgnoreEntryOccurrence> list = directories.get(directory);
+            if (list == null) {
+                list = ContainerUtil.newArrayList();
+                directories.put(directory, list);
+            }
+            list.add(entry);
+
+            if (!(fileType instanceof GitExcludeFileType) && additionalFiles.contains(file)) {
+                outerEntries.add(entry);
+            }
+        }
+        this.outerEntries = outerEntries;
+    }
+
+    /**
+     * Creates empty index filled lazily with the directory-scoped entries.
+     *
+     * @param project  current project
+     * @param fileType type of the indexed ignore files
+     */
+    private IgnoreDirectoryIndex(@NotNull Project project, @NotNull IgnoreFileType fileType) {
+        this.project = project;
+        this.fileType = fileType;
+        this.lazy = true;
+        this.indexed = IgnoreFilesIndex.hasEntries(project, fileType);
+    }
+
+    /**
+     * Creates index of the given file type that fetches entries from {@link IgnoreFilesIndex}. Rules of
+     * {@link GitExcludeFileType} are not relative to the file's directory, so all of its entries are fetched at once.
+     *
+     * @param project  current project
+     * @param fileType type of the indexed ignore files
+     * @return index
+     */
+    @NotNull
+    public static IgnoreDirectoryIndex create(@NotNull Project project, @NotNull IgnoreFileType fileType) {
+        if (fileType instanceof GitExcludeFileType) {
+            return new IgnoreDirectoryIndex(project, fileType, IgnoreFilesIndex.getEntries(project, fileType));
+        }
+        return new IgnoreDirectoryIndex(project, fileType);
+    }
+
+    /**
+     * Returns entries of the ignore files which rules are relative to the given directory.
+     *
+     * @param directory directory
+     * @return entries
+     */
+    @NotNull
+    public List<IgnoreEntryOccurrence> get(@NotNull VirtualFile directory) {
+        final List<IgnoreEntryOccurrence> entries = directories.get(directory);
+        if (entries != null) {
+            return entries;
+        }
+        return lazy && indexed ? load(directory) : Collections.<IgnoreEntryOccurrence>emptyList();
+    }
+
+    /**
+     * Returns entries of the additional files located outside of the project.
+     *
+     * @return outer entries
+     */
+    @NotNull
+    public List<IgnoreEntryOccurrence> getOuterEntries() {
+        final List<IgnoreEntryOccurrence> entries = outerEntries;
+        return entries != null ? entries : loadOuterEntries();
+    }
+
+    /**
+     * Returns entry of the given ignore file stored in the index.
+     *
+     * @param file ignore file
+     * @return entry or <code>null</code> if it is not stored
+     */
+    @Nullable
+    public IgnoreEntryOccurrence getEntry(@NotNull VirtualFile file) {
+        return files.get(file);
+    }
+
+    /**
+     * Replaces entry of the given ignore file. Rules of the previous and new entry are compared, so nothing is changed
+     * if the file's rules are the same. Entries of the directories that have not been fetched yet are not stored, as
+     * they are fetched up to date when the directory is visited.
+     *
+     * @param file  ignore file
+     * @param entry new entry or <code>null</code> if file has no entry anymore
+     * @return directory affected by the change or <code>null</code> if rules have not changed
+     */
+    @Nullable
+    public synchronized VirtualFile update(@NotNull VirtualFile file, @Nullable IgnoreEntryOccurrence entry) {
+        final IgnoreEntryOccurrence previous = files.get(file);
+        if (previous == null ? entry == null : previous.equals(entry)) {
+            return null;
+        }
+
+        final VirtualFile directory = getDirectory(project, fileType, file);
+        if (directory == null) {
+            return null;
+        }
+
+        final List<IgnoreEntryOccurrence> entries = directories.get(directory);
+        final List<IgnoreEntryOccurrence> outerEntries = !(fileType instanceof GitExcludeFileType) &&
+                ExternalIndexableSetContributor.getAdditionalFiles(project).contains(file) ? this.outerEntries : null;
+        if (lazy && entries == null && outerEntries == null) {
+            return null;
+        }
+
+        if (entry == null) {
+            files.remove(file);
+        } else {
+            files.put(file, entry);
+        }
+        if (entries != null || !lazy) {
+            directories.put(directory, replace(
+                    entries == null ? Collections.<IgnoreEntryOccurrence>emptyList() : entries, previous, entry
+            ));
+        }
+        if (outerEntries != null) {
+            this.outerEntries = replace(outerEntries, previous, entry);
+        }
+        return directory;
+    }
+
+    /**
+     * Checks if index is empty.
+     *
+     * @return index is empty
+     */
+    public boolean isEmpty() {
+        return lazy ? !indexed : files.isEmpty();
+    }
+
+    /**
+     * Returns directory the rules of the ignore file are relative to.
+     *
+     * @param project  current project
+     * @param fileType type of the ignore file
+     * @param file     ignore file
+     * @return directory or <code>null</code> if it cannot be resolved
+     */
+    @Nullable
+    public static VirtualFile getDirectory(@NotNull Project project, @NotNull IgnoreFileType fileType,
+                                           @NotNull VirtualFile file) {
+        return fileType instanceof GitExcludeFileType ?
+                GitExcludeFileType.getWorkingDirectory(project, file) : file.getParent();
+    }
+
+    /**
+     * Fetches entries of the ignore files placed in the given directory. Entries are not stored if index cannot be
+     * queried at the moment.
+     *
+     * @param directory directory
+     * @return entries
+     */
+    @NotNull
+    private synchronized List<IgnoreEntryOccurrence> load(@NotNull VirtualFile directory) {
+        List<IgnoreEntryOccurrence> entries = directories.get(directory);
+        if (entries != null) {
+            return entries;
+        }
+        if (!isIndexAccessible()) {
+            return Collections.emptyList();
+        }
+
+        entries = ContainerUtil.newArrayList();
+        for (IgnoreEntryOccurrence entry : ContainerUtil.reverse(
+                IgnoreFilesIndex.getEntries(project, fileType, directory))) {
+            final VirtualFile file = entry.getFile();
+            if (directory.equals(file.getParent())) {
+                files.put(file, entry);
+                entries.add(entry);
+            }
+        }
+        directories.put(directory, entries);
+        return entries;
+    }
+
+    /**
+     * Fetches entries of the additional files located outside of the project. Entries are not stored if index cannot
+     * be queried at the moment.
+     *
+     * @return outer entries
+     */
+    @NotNull
+    private synchronized List<IgnoreEntryOccurrence> loadOuterEntries() {
+        List<IgnoreEntryOccurrence> entries = outerEntries;
+        if (entries != null) {
+            return entries;
+        }
+        if (fileType instanceof GitExcludeFileType || !indexed || !isIndexAccessible()) {
+            return Collections.emptyList();
+        }
+
+        entries = ContainerUtil.newArrayList();
+        for (VirtualFile file : ExternalIndexableSetContributor.getAdditionalFiles(project)) {
+            final IgnoreEntryOccurrence entry = IgnoreFilesIndex.getEntry(project, fileType, file);
+            if (entry != null) {
+                files.put(file, entry);
+                entries.add(entry);
+            }
+        }
+        outerEntries = entries;
+        return entries;
+    }
+
+    /**
+     * Checks if {@link IgnoreFilesIndex} can be queried - with the read access and outside of the dumb mode.
+     *
+     * @return index can be queried
+     */
+    private boolean isIndexAccessible() {
+        return ApplicationManager.getApplication().isReadAccessAllowed() && !DumbService.isDumb(project);
+    }
+
+    /**
+     * Returns copy of the list with the previous entry replaced. New entry is placed at the beginning if the previous
+     * one was not present.
+     *
+     * @param entries  source list
+     * @param previous entry to replace
+     * @param entry    new entry or <code>null</code> to remove the previous one
+     * @return new list
+     */
+    @NotNull
+    private static List<IgnoreEntryOccurrence> replace(@NotNull List<IgnoreEntryOccurrence> entries,
+                                                       @Nullable IgnoreEntryOccurrence previous,
+                                                       @Nullable IgnoreEntryOccurrence entry) {
+        final List<IgnoreEntryOccurrence> result = ContainerUtil.newArrayList(entries);
+        final int index = previous == null ? -1 : result.indexOf(previous);
+        if (index > -1) {
+            if (entry == null) {
+                result.remove(index);
+            } else {
+                result.set(index, entry);
+            }
+        } else if (entry != null) {
+            result.add(0, entry);
+        }
+        return result;
+    }
+}
@@ -27,9 +27,15 @@ package mobi.hsz.idea.gitignore.indexing;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
 import com.intellij.util.containers.ContainerUtil;
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import com.intellij.util.io.DataInputOutputUtil;
+import gnu.trove.TObjectIntHashMap;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.util.Glob;
+import mobi.hsz.idea.gitignore.util.GlobMatcher;
+import mobi.hsz.idea.gitignore.util.GlobRuleSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -37,25 +43,49 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Entry containing information about the {@link VirtualFile} instance of the ignore file mapped with the collection
- * of ignore entries converted to {@link Pattern} for better performance. Class is used for indexing.
+ * of its rules. Rules are kept in their original form and are converted to {@link GlobMatcher} only when they are
+ * evaluated for the first time, so reading entries from the index does not compile anything. Class is used for
+ * indexing.
  *
  * @author Jakub Chrzanowski <jakub@hsz.mobi>
  * @since 2.0
  */
 public class IgnoreEntryOccurrence implements Serializable {
+    /** Flag of the negated rule. */
+    private static final int FLAG_NEGATED = 1;
+
+    /** Flag of the rule with {@link IgnoreBundle.Syntax#REGEXP} syntax. */
+    private static final int FLAG_REGEXP = 2;
+
+    /** Offset basis of the 64-bit FNV-1a hash. */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** Prime of the 64-bit FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     /** Current ignore file. */
     @NotNull
     private final VirtualFile file;
 
-    /** Collection of ignore entries converted to {@link Pattern}. */
+    /** Rules of the ignore file in their original form. */
     @NotNull
-    private final List<Pair<Matcher, Boolean>> items = ContainerUtil.newArrayList();
+    private final List<Rule> rules = ContainerUtil.newArrayList();
+
+    /** 64-bit FNV-1a hash of the normalized {@link #rules}. */
+    private long contentHash = FNV_OFFSET_BASIS;
+
+    /** Rules converted to {@link GlobMatcher} or <code>null</code> if they have not been compiled yet. */
+    @Nullable
+    private volatile List<Pair<GlobMatcher, Boolean>> items;
+
+    /** Compiled set of the {@link #items} used for matching or <code>null</code> if not compiled yet. */
+    @Nullable
+    private volatile GlobRuleSet ruleSet;
 
     /**
      * Constructor.
@@ -67,17 +97,18 @@ public class IgnoreEntryOccurrence implements Serializable {
     }
 
     /**
-     * Calculates hashCode with {@link #file} and {@link #items} hashCodes.
+     * Calculates hashCode with {@link #file} hashCode and {@link #contentHash}.
      *
      * @return entry hashCode
      */
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(file).append(items.toString()).toHashCode();
+        return 31 * file.hashCode() + (int) (contentHash ^ (contentHash >>> 32));
     }
 
     /**
-     * Checks if given object is equal to current {@link IgnoreEntryOccurrence} instance.
+     * Checks if given object is equal to current {@link IgnoreEntryOccurrence} instance. Rules are compared with their
+     * {@link #contentHash}, so entries of the file saved without any change of rules are equal.
      *
      * @param obj to check
      * @return objects are equal.
@@ -89,12 +120,17 @@ public class IgnoreEntryOccurrence implements Serializable {
         }
 
         final IgnoreEntryOccurrence entry = (IgnoreEntryOccurrence) obj;
-        boolean equals = file.equals(entry.file) && items.size() == entry.items.size();
-        for (int i = 0; i < items.size(); i++) {
-            equals = equals && items.get(i).toString().equals(entry.items.get(i).toString());
-        }
+        return contentHash == entry.contentHash && rules.size() == entry.rules.size() && file.equals(entry.file);
+    }
 
-        return equals;
+    /**
+     * Returns 64-bit hash of the normalized rules - comments, empty lines and surrounding whitespaces of the glob
+     * rules do not affect it.
+     *
+     * @return content hash
+     */
+    public long getContentHash() {
+        return contentHash;
     }
 
     /**
@@ -108,71 +144,257 @@ public class IgnoreEntryOccurrence implements Serializable {
     }
 
     /**
-     * Returns entries for current file.
+     * Returns entries for current file converted to {@link GlobMatcher}. Rules that cannot be compiled are skipped.
      *
      * @return entries
      */
     @NotNull
-    public List<Pair<Matcher, Boolean>> getItems() {
+    public List<Pair<GlobMatcher, Boolean>> getItems() {
+        List<Pair<GlobMatcher, Boolean>> items = this.items;
+        if (items == null) {
+            compile();
+            items = this.items;
+        }
         return items;
     }
 
     /**
-     * Adds new element to {@link #items}.
+     * Adds new rule to {@link #rules}. Glob rules are trimmed, like {@link Glob} does before compiling them.
      *
-     * @param matcher   entry converted to {@link Matcher}
-     * @param isNegated entry is negated
+     * @param rule      rule in its original form
+     * @param syntax    syntax of the rule
+     * @param isNegated rule is negated
      */
-    public void add(@NotNull Matcher matcher, boolean isNegated) {
-        items.add(Pair.create(matcher, isNegated));
+    public synchronized void add(@NotNull String rule, @NotNull IgnoreBundle.Syntax syntax, boolean isNegated) {
+        addRule(rule, syntax, isNegated);
+        items = null;
+        ruleSet = null;
     }
 
     /**
-     * Static helper to write given {@link IgnoreEntryOccurrence} to the output stream.
+     * Adds normalized rule to {@link #rules} and updates {@link #contentHash}.
+     *
+     * @param rule      rule in its original form
+     * @param syntax    syntax of the rule
+     * @param isNegated rule is negated
+     */
+    private void addRule(@NotNull String rule, @NotNull IgnoreBundle.Syntax syntax, boolean isNegated) {
+        final String source = syntax == IgnoreBundle.Syntax.GLOB ? rule.trim() : rule;
+        rules.add(new Rule(source, syntax, isNegated));
+
+        long hash = contentHash;
+        hash = (hash ^ ((isNegated ? FLAG_NEGATED : 0) | (syntax == IgnoreBundle.Syntax.REGEXP ? FLAG_REGEXP : 0)))
+                * FNV_PRIME;
+        for (int i = 0; i < source.length(); i++) {
+            final char ch = source.charAt(i);
+            hash = (hash ^ (ch & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (ch >>> 8)) * FNV_PRIME;
+        }
+        contentHash = (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    /**
+     * Returns compiled set of the entries that looks for the last rule matching given path. Rules are compiled
+     * on the first call.
+     *
+     * @return rule set
+     */
+    @NotNull
+    public GlobRuleSet getRuleSet() {
+        GlobRuleSet ruleSet = this.ruleSet;
+        if (ruleSet == null) {
+            compile();
+            ruleSet = this.ruleSet;
+        }
+        return ruleSet;
+    }
+
+    /**
+     * Returns rules that differ between the previous and the new entry of the ignore file. Rules of the longest common
+     * prefix and suffix keep their relative order, so status can change only for paths matched by the returned rules
+     * of any of the entries.
+     *
+     * @param previous previous entry or <code>null</code> if file had no entry
+     * @param entry    new entry or <code>null</code> if file has no entry anymore
+     * @return changed rules with their syntax
+     */
+    @NotNull
+    public static List<Pair<String, IgnoreBundle.Syntax>> getChangedRules(@Nullable IgnoreEntryOccurrence previous,
+                                                                         @Nullable IgnoreEntryOccurrence entry) {
+        final List<Rule> before = previous == null ? Collections.<Rule>emptyList() : previous.rules;
+        final List<Rule> after = entry == null ? Collections.<Rule>emptyList() : entry.rules;
+
+        int start = 0;
+        while (start < before.size() && start < after.size() && before.get(start).equals(after.get(start))) {
+            start++;
+        }
+        int end = 0;
+        while (end < before.size() - start && end < after.size() - start &&
+                before.get(before.size() - 1 - end).equals(after.get(after.size() - 1 - end))) {
+            end++;
+        }
+
+        final List<Pair<String, IgnoreBundle.Syntax>> result = ContainerUtil.newArrayList();
+        for (Rule rule : before.subList(start, before.size() - end)) {
+            result.add(Pair.create(rule.source, rule.syntax));
+        }
+        for (Rule rule : after.subList(start, after.size() - end)) {
+            result.add(Pair.create(rule.source, rule.syntax));
+        }
+        return result;
+    }
+
+    /** Converts {@link #rules} to {@link #items} and {@link #ruleSet} if they have not been compiled yet. */
+    private synchronized void compile() {
+        if (ruleSet != null) {
+            return;
+        }
+
+        final List<Pair<GlobMatcher, Boolean>> items = ContainerUtil.newArrayListWithCapacity(rules.size());
+        final GlobRuleSet ruleSet = new GlobRuleSet();
+        for (Rule rule : rules) {
+            final GlobMatcher matcher = Glob.createMatcher(rule.source, rule.syntax, false);
+            if (matcher != null) {
+                items.add(Pair.create(matcher, rule.negated));
+                ruleSet.add(matcher, rule.negated);
+            }
+        }
+        this.items = Collections.unmodifiableList(items);
+        this.ruleSet = ruleSet;
+    }
+
+    /**
+     * Static helper to write given {@link IgnoreEntryOccurrence} to the output stream. File is written with its ID
+     * (or its URL if it has no ID) and rules are written as the indexes in the table of distinct rule sources
+     * followed by the syntax and negation flags. Numbers are written with the variable length encoding. Entry is not
+     * modified after indexing, so it is written without locking.
      *
      * @param out   output stream
      * @param entry entry to write
      * @throws IOException I/O exception
      */
-    public static synchronized void serialize(@NotNull DataOutput out, @NotNull IgnoreEntryOccurrence entry)
+    public static void serialize(@NotNull DataOutput out, @NotNull IgnoreEntryOccurrence entry)
             throws IOException {
-        out.writeUTF(entry.getFile().toString());
-        out.writeInt(entry.items.size());
-        for (Pair<Matcher, Boolean> item : entry.items) {
-            out.writeUTF(item.first.pattern().pattern());
-            out.writeBoolean(item.second);
+        final VirtualFile file = entry.getFile();
+        final int fileId = file instanceof VirtualFileWithId ? ((VirtualFileWithId) file).getId() : 0;
+        DataInputOutputUtil.writeINT(out, fileId);
+        if (fileId <= 0) {
+            out.writeUTF(file.getUrl());
+        }
+
+        final List<Rule> rules = entry.rules;
+        final TObjectIntHashMap<String> strings = new TObjectIntHashMap<String>();
+        final List<String> table = ContainerUtil.newArrayList();
+        for (Rule rule : rules) {
+            if (!strings.containsKey(rule.source)) {
+                strings.put(rule.source, table.size());
+                table.add(rule.source);
+            }
+        }
+
+        DataInputOutputUtil.writeINT(out, table.size());
+        for (String source : table) {
+            out.writeUTF(source);
+        }
+
+        DataInputOutputUtil.writeINT(out, rules.size());
+        for (Rule rule : rules) {
+            DataInputOutputUtil.writeINT(out, strings.get(rule.source));
+            out.writeByte((rule.negated ? FLAG_NEGATED : 0) |
+                    (rule.syntax == IgnoreBundle.Syntax.REGEXP ? FLAG_REGEXP : 0));
         }
     }
 
     /**
-     * Static helper to read {@link IgnoreEntryOccurrence} from the input stream.
+     * Static helper to read {@link IgnoreEntryOccurrence} from the input stream. Whole entry is always consumed, even
+     * if its file does not exist anymore.
      *
      * @param in input stream
      * @return read {@link IgnoreEntryOccurrence}
      */
     @Nullable
-    public static synchronized IgnoreEntryOccurrence deserialize(@NotNull DataInput in) {
+    public static IgnoreEntryOccurrence deserialize(@NotNull DataInput in) {
         try {
-            final String path = in.readUTF();
-            if (StringUtils.isEmpty(path)) {
-                return null;
+            final int fileId = DataInputOutputUtil.readINT(in);
+            final VirtualFile file = fileId > 0 ? PersistentFS.getInstance().findFileById(fileId) :
+                    VirtualFileManager.getInstance().findFileByUrl(in.readUTF());
+
+            final String[] table = new String[DataInputOutputUtil.readINT(in)];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = in.readUTF();
             }
 
-            final VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(path);
-            if (file != null) {
-                final IgnoreEntryOccurrence entry = new IgnoreEntryOccurrence(file);
-                int size = in.readInt();
-                for (int i = 0; i < size; i++) {
-                    final Pattern pattern = Pattern.compile(in.readUTF());
-                    Boolean isNegated = in.readBoolean();
-                    entry.add(pattern.matcher(""), isNegated);
+            final int size = DataInputOutputUtil.readINT(in);
+            final IgnoreEntryOccurrence entry = file == null ? null : new IgnoreEntryOccurrence(file);
+            for (int i = 0; i < size; i++) {
+                final String source = table[DataInputOutputUtil.readINT(in)];
+                final int flags = in.readByte();
+                if (entry != null) {
+                    entry.addRule(
+                            source,
+                            (flags & FLAG_REGEXP) != 0 ? IgnoreBundle.Syntax.REGEXP : IgnoreBundle.Syntax.GLOB,
+                            (flags & FLAG_NEGATED) != 0
+                    );
                 }
-
-                return entry;
             }
+
+            return entry;
         } catch (IOException ignored) {
         }
 
         return null;
     }
+
+    /** Single rule of the ignore file in its original form. */
+    private static final class Rule implements Serializable {
+        /** Rule source. */
+        @NotNull
+        private final String source;
+
+        /** Syntax of the rule. */
+        @NotNull
+        private final IgnoreBundle.Syntax syntax;
+
+        /** Rule is negated. */
+        private final boolean negated;
+
+        /**
+         * Constructor.
+         *
+         * @param source  rule source
+         * @param syntax  syntax of the rule
+         * @param negated rule is negated
+         */
+        private Rule(@NotNull String source, @NotNull IgnoreBundle.Syntax syntax, boolean negated) {
+            this.source = source;
+            this.syntax = syntax;
+            this.negated = negated;
+        }
+
+        /**
+         * Calculates hashCode with the rule's source, syntax and negation.
+         *
+         * @return rule hashCode
+         */
+        @Override
+        public int hashCode() {
+            return 31 * (31 * source.hashCode() + syntax.hashCode()) + (negated ? 1 : 0);
+        }
+
+        /**
+         * Checks if given object is the same rule.
+         *
+         * @param obj to check
+         * @return objects are equal
+         */
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof Rule)) {
+                return false;
+            }
+
+            final Rule rule = (Rule) obj;
+            return negated == rule.negated && syntax == rule.syntax && source.equals(rule.source);
+        }
+    }
 }
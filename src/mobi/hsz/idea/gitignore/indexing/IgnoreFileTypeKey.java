@@ -30,22 +30,57 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Decorator for {@link IgnoreFileType} to provide less unique hashcode when used with {@link IgnoreFilesIndex}.
+ * Key can be additionally scoped with the ID of the directory containing the ignore file, so only the entries of
+ * the given directory can be fetched from the index.
  *
  * @author Jakub Chrzanowski <jakub@hsz.mobi>
  * @since 2.0
  */
 public class IgnoreFileTypeKey {
+    /** Directory ID of the per-type marker key that is mapped with every ignore file of the type without payload. */
+    public static final int MARKER_ID = -1;
+
     /** Current file type. */
     @NotNull
     private final IgnoreFileType type;
 
+    /**
+     * ID of the directory containing the ignore file, <code>0</code> if key is not scoped with directory or
+     * {@link #MARKER_ID} for the marker key.
+     */
+    private final int directoryId;
+
     /**
      * Constructor.
      *
      * @param type current file type
      */
     public IgnoreFileTypeKey(@NotNull IgnoreFileType type) {
+        this(type, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param type        current file type
+     * @param directoryId ID of the directory containing the ignore file
+     * @since 2.2
+     */
+    public IgnoreFileTypeKey(@NotNull IgnoreFileType type, int directoryId) {
         this.type = type;
+        this.directoryId = directoryId;
+    }
+
+    /**
+     * Creates marker key of the given file type.
+     *
+     * @param type current file type
+     * @return marker key
+     * @since 2.2
+     */
+    @NotNull
+    public static IgnoreFileTypeKey createMarker(@NotNull IgnoreFileType type) {
+        return new IgnoreFileTypeKey(type, MARKER_ID);
     }
 
     /**
@@ -59,7 +94,17 @@ public class IgnoreFileTypeKey {
     }
 
     /**
-     * Checks if file types are equal - if language names matches.
+     * Returns ID of the directory containing the ignore file.
+     *
+     * @return directory ID, <code>0</code> if key is not scoped with directory or {@link #MARKER_ID}
+     * @since 2.2
+     */
+    public int getDirectoryId() {
+        return directoryId;
+    }
+
+    /**
+     * Checks if file types are equal - if language names and directory IDs matches.
      *
      * @param o object to check
      * @return file types are equal
@@ -67,16 +112,17 @@ public class IgnoreFileTypeKey {
     @Override
     public boolean equals(@Nullable Object o) {
         return o != null && o instanceof IgnoreFileTypeKey &&
+                ((IgnoreFileTypeKey) o).getDirectoryId() == directoryId &&
                 ((IgnoreFileTypeKey) o).getType().getLanguageName().equals(this.type.getLanguageName());
     }
 
     /**
-     * Returns hashcode using hashcode of the language's name.
+     * Returns hashcode using hashcode of the language's name and directory ID.
      *
      * @return hashcode of language's name
      */
     @Override
     public int hashCode() {
-        return type.getLanguageName().hashCode();
+        return type.getLanguageName().hashCode() * 31 + directoryId;
     }
 }
@@ -26,22 +26,27 @@ package mobi.hsz.idea.gitignore.indexing;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.FileContent;
 import com.intellij.util.indexing.ID;
 import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
 import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.file.type.kind.GitExcludeFileType;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
 import mobi.hsz.idea.gitignore.psi.IgnoreFile;
 import mobi.hsz.idea.gitignore.psi.IgnoreVisitor;
-import mobi.hsz.idea.gitignore.util.Glob;
+import mobi.hsz.idea.gitignore.util.PerformanceStatistics;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -50,7 +55,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Implementation of {@link AbstractIgnoreFilesIndex} that allows to index all ignore files content using native
@@ -64,7 +68,7 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     public static final ID<IgnoreFileTypeKey, IgnoreEntryOccurrence> KEY = ID.create("IgnoreFilesIndex");
 
     /** Current indexer version. Has to be increased if significant changes have been done. */
-    private static final int VERSION = 2;
+    private static final int VERSION = 6;
 
     /**
      * Returns indexer's name.
@@ -78,7 +82,12 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     }
 
     /**
-     * Maps indexed files content to the {@link IgnoreEntryOccurrence}.
+     * Maps indexed files content to the {@link IgnoreEntryOccurrence}. Entry is stored once - with the key scoped with
+     * the ID of the directory containing the file, or with the key of its file type if file cannot be scoped.
+     * Every file is mapped also with the marker key of its file type ({@link IgnoreFileTypeKey#createMarker}) without
+     * any payload, so files of the type are listed without walking all of the keys. Rules are read with
+     * {@link IgnoreLexerIndexer} without building PSI tree - PSI tree is visited only if content contains grammar
+     * errors.
      *
      * @param inputData indexed file data
      * @return {@link IgnoreEntryOccurrence} data mapped with {@link IgnoreFileTypeKey}
@@ -86,36 +95,56 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     @NotNull
     @Override
     public Map<IgnoreFileTypeKey, IgnoreEntryOccurrence> map(@NotNull final FileContent inputData) {
-        if (!(inputData.getPsiFile() instanceof IgnoreFile)) {
+        if (!(inputData.getFileType() instanceof IgnoreFileType)) {
             return Collections.emptyMap();
         }
-        final IgnoreEntryOccurrence result = new IgnoreEntryOccurrence(inputData.getFile());
         final IgnoreFileType type = (IgnoreFileType) inputData.getFileType();
 
-        IgnoreFile ignoreFile = (IgnoreFile) inputData.getPsiFile();
+        IgnoreEntryOccurrence result = IgnoreLexerIndexer.map(inputData.getFile(), type, inputData.getContentAsText());
+        if (result == null) {
+            if (!(inputData.getPsiFile() instanceof IgnoreFile)) {
+                return Collections.emptyMap();
+            }
+            result = mapPsi(inputData.getFile(), (IgnoreFile) inputData.getPsiFile());
+        }
+
+        final Map<IgnoreFileTypeKey, IgnoreEntryOccurrence> map = ContainerUtil.newHashMap();
+        map.put(IgnoreFileTypeKey.createMarker(type), null);
+        map.put(new IgnoreFileTypeKey(type, getDirectoryId(type, inputData.getFile())), result);
+        return map;
+    }
+
+    /**
+     * Reads rules of the ignore file from its PSI tree.
+     *
+     * @param file       ignore file
+     * @param ignoreFile PSI of the ignore file
+     * @return entry with rules
+     */
+    @NotNull
+    public static IgnoreEntryOccurrence mapPsi(@NotNull VirtualFile file, @NotNull IgnoreFile ignoreFile) {
+        final IgnoreEntryOccurrence result = new IgnoreEntryOccurrence(file);
         ignoreFile.acceptChildren(new IgnoreVisitor() {
             @Override
             public void visitEntry(@NotNull IgnoreEntry entry) {
-                final Pattern pattern = Glob.createPattern(entry);
-                if (pattern != null) {
-                    result.add(pattern.matcher(""), entry.isNegated());
-                }
+                result.add(entry.getValue(), entry.getSyntax(), entry.isNegated());
             }
         });
-
-        return Collections.singletonMap(new IgnoreFileTypeKey(type), result);
+        return result;
     }
 
     /**
-     * Saves data to the indexing output stream.
+     * Saves data to the indexing output stream. Key descriptor holds no state, so keys are written and read
+     * concurrently by the indexing threads.
      *
      * @param out   output stream
      * @param value filetype to write
      * @throws IOException if an I/O error occurs
      */
     @Override
-    public synchronized void save(@NotNull DataOutput out, IgnoreFileTypeKey value) throws IOException {
+    public void save(@NotNull DataOutput out, IgnoreFileTypeKey value) throws IOException {
         out.writeUTF(value.getType().getLanguageName());
+        DataInputOutputUtil.writeINT(out, value.getDirectoryId());
     }
 
     /**
@@ -127,12 +156,13 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
      * @throws IOException if an I/O error occurs
      */
     @Override
-    public synchronized IgnoreFileTypeKey read(@NotNull DataInput in) throws IOException {
+    public IgnoreFileTypeKey read(@NotNull DataInput in) throws IOException {
         final String languageName = in.readUTF();
+        final int directoryId = DataInputOutputUtil.readINT(in);
         for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
             final IgnoreFileType type = language.getFileType();
             if (type.getLanguageName().equals(languageName)) {
-                return new IgnoreFileTypeKey(type);
+                return new IgnoreFileTypeKey(type, directoryId);
             }
         }
         return null;
@@ -153,26 +183,31 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     private static final DataExternalizer<IgnoreEntryOccurrence> DATA_EXTERNALIZER =
             new DataExternalizer<IgnoreEntryOccurrence>() {
                 /**
-                 * Saves data in the output stream.
+                 * Saves data in the output stream. Marker keys are mapped with <code>null</code> value.
                  *
                  * @param out output stream
                  * @param entry entry to write
                  * @throws IOException if an I/O error occurs
                  */
                 @Override
-                public void save(@NotNull DataOutput out, IgnoreEntryOccurrence entry) throws IOException {
-                    IgnoreEntryOccurrence.serialize(out, entry);
+                public void save(@NotNull DataOutput out, @Nullable IgnoreEntryOccurrence entry) throws IOException {
+                    out.writeBoolean(entry != null);
+                    if (entry != null) {
+                        IgnoreEntryOccurrence.serialize(out, entry);
+                    }
                 }
 
                 /**
                  * Reads {@link IgnoreEntryOccurrence} from the input stream.
                  *
                  * @param in input stream
-                 * @return read entry
+                 * @return read entry or <code>null</code> for the marker keys
+                 * @throws IOException if an I/O error occurs
                  */
+                @Nullable
                 @Override
-                public IgnoreEntryOccurrence read(@NotNull DataInput in) {
-                    return IgnoreEntryOccurrence.deserialize(in);
+                public IgnoreEntryOccurrence read(@NotNull DataInput in) throws IOException {
+                    return in.readBoolean() ? IgnoreEntryOccurrence.deserialize(in) : null;
                 }
             };
 
@@ -198,25 +233,54 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     }
 
     /**
-     * Returns collection of indexed {@link IgnoreFileTypeKey} for given {@link Project}.
+     * Returns collection of indexed {@link IgnoreFileType} for given {@link Project}. Only the marker key of each of
+     * the file types is looked up.
      *
      * @param project current project
-     * @return {@link IgnoreFileTypeKey} collection
+     * @return {@link IgnoreFileType} collection
      */
     @NotNull
-    public static Collection<IgnoreFileType> getKeys(@NotNull Project project) {
-        Collection<IgnoreFileTypeKey> keys = FileBasedIndex.getInstance().getAllKeys(KEY, project);
-        return ContainerUtil.map(keys, new Function<IgnoreFileTypeKey, IgnoreFileType>() {
-            @NotNull
+    public static Collection<IgnoreFileType> getKeys(@NotNull final Project project) {
+        return ApplicationManager.getApplication().runReadAction(new Computable<Collection<IgnoreFileType>>() {
             @Override
-            public IgnoreFileType fun(@NotNull IgnoreFileTypeKey entry) {
-                return entry.getType();
+            public Collection<IgnoreFileType> compute() {
+                final List<IgnoreFileType> result = ContainerUtil.newArrayList();
+                final GlobalSearchScope scope = IgnoreSearchScope.get(project);
+                for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
+                    final IgnoreFileType fileType = language.getFileType();
+                    if (hasMarker(fileType, scope)) {
+                        result.add(fileType);
+                    }
+                }
+                return result;
             }
         });
     }
 
+    /**
+     * Checks if any entries of the given {@link IgnoreFileType} are indexed. Only the marker key of the file type is
+     * looked up, until the first file mapped with it.
+     *
+     * @param project  current project
+     * @param fileType filetype
+     * @return entries are indexed or the index cannot be queried at the moment
+     */
+    public static boolean hasEntries(@NotNull final Project project, @NotNull final IgnoreFileType fileType) {
+        try {
+            return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+                @Override
+                public Boolean compute() {
+                    return hasMarker(fileType, IgnoreSearchScope.get(project));
+                }
+            });
+        } catch (RuntimeException ignored) {
+            return true;
+        }
+    }
+
     /**
      * Returns collection of indexed {@link IgnoreEntryOccurrence} for given {@link Project} and {@link IgnoreFileType}.
+     * Files of the type are listed with the marker key and the entry of each one is read with its own key.
      *
      * @param project  current project
      * @param fileType filetype
@@ -227,16 +291,109 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
         try {
             if (ApplicationManager.getApplication().isReadAccessAllowed()) {
                 final GlobalSearchScope scope = IgnoreSearchScope.get(project);
-                return FileBasedIndex.getInstance()
-                        .getValues(IgnoreFilesIndex.KEY, new IgnoreFileTypeKey(fileType), scope);
+                final Collection<VirtualFile> files = FileBasedIndex.getInstance()
+                        .getContainingFiles(KEY, IgnoreFileTypeKey.createMarker(fileType), scope);
+                final List<IgnoreEntryOccurrence> result = ContainerUtil.newArrayList();
+                for (VirtualFile file : files) {
+                    ContainerUtil.addIfNotNull(result, getEntry(project, fileType, file));
+                }
+                return result;
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return ContainerUtil.emptyList();
+    }
+
+    /**
+     * Returns collection of indexed {@link IgnoreEntryOccurrence} of the ignore files placed directly in the given
+     * directory. Only the entries mapped with the directory's key are read from the index.
+     *
+     * @param project   current project
+     * @param fileType  filetype
+     * @param directory directory containing ignore files
+     * @return {@link IgnoreEntryOccurrence} collection
+     */
+    @NotNull
+    public static List<IgnoreEntryOccurrence> getEntries(@NotNull Project project, @NotNull IgnoreFileType fileType,
+                                                         @NotNull VirtualFile directory) {
+        try {
+            if (directory instanceof VirtualFileWithId &&
+                    ApplicationManager.getApplication().isReadAccessAllowed()) {
+                final GlobalSearchScope scope = IgnoreSearchScope.get(project);
+                final int directoryId = ((VirtualFileWithId) directory).getId();
+                return getValues(new IgnoreFileTypeKey(fileType, directoryId), scope);
             }
         } catch (RuntimeException ignored) {
         }
         return ContainerUtil.emptyList();
     }
 
+    /**
+     * Returns indexed {@link IgnoreEntryOccurrence} of the single ignore file. Entry is read with the key of
+     * the file's current directory.
+     *
+     * @param project  current project
+     * @param fileType filetype
+     * @param file     ignore file
+     * @return {@link IgnoreEntryOccurrence} or <code>null</code> if file is not indexed
+     */
+    @Nullable
+    public static IgnoreEntryOccurrence getEntry(@NotNull Project project, @NotNull IgnoreFileType fileType,
+                                                 @NotNull VirtualFile file) {
+        try {
+            if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+                final GlobalSearchScope scope = GlobalSearchScope.fileScope(project, file);
+                final IgnoreFileTypeKey key = new IgnoreFileTypeKey(fileType, getDirectoryId(fileType, file));
+                return ContainerUtil.getFirstItem(getValues(key, scope));
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * Fetches indexed {@link IgnoreEntryOccurrence} mapped with the given {@link IgnoreFileTypeKey} in the given scope.
+     *
+     * @param key   index key
+     * @param scope search scope
+     * @return {@link IgnoreEntryOccurrence} collection
+     */
+    @NotNull
+    private static List<IgnoreEntryOccurrence> getValues(@NotNull IgnoreFileTypeKey key,
+                                                         @NotNull GlobalSearchScope scope) {
+        final long start = System.nanoTime();
+        PerformanceStatistics.increment(PerformanceStatistics.Counter.INDEX_FETCHES);
+        try {
+            return FileBasedIndex.getInstance()
+                    .getValues(IgnoreFilesIndex.KEY, key, scope);
+        } finally {
+            PerformanceStatistics.record(PerformanceStatistics.Timer.INDEX_FETCH, start);
+        }
+    }
+
+    /**
+     * Checks if any file in the given scope is mapped with the marker key of the file type.
+     *
+     * @param fileType filetype
+     * @param scope    search scope
+     * @return file type is indexed
+     */
+    private static boolean hasMarker(@NotNull IgnoreFileType fileType, @NotNull GlobalSearchScope scope) {
+        final Ref<Boolean> result = Ref.create(false);
+        FileBasedIndex.getInstance().processValues(KEY, IgnoreFileTypeKey.createMarker(fileType), null,
+                new FileBasedIndex.ValueProcessor<IgnoreEntryOccurrence>() {
+                    @Override
+                    public boolean process(@NotNull VirtualFile file, @Nullable IgnoreEntryOccurrence value) {
+                        result.set(true);
+                        return false;
+                    }
+                }, scope);
+        return result.get();
+    }
+
     /**
      * Returns collection of indexed {@link VirtualFile} for given {@link Project} and {@link IgnoreFileTypeKey}.
+     * Files are listed with the marker key, so their entries are not read.
      *
      * @param project  current project
      * @param fileType filetype
@@ -244,13 +401,30 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
      */
     @NotNull
     public static List<VirtualFile> getFiles(@NotNull Project project, @NotNull IgnoreFileType fileType) {
-        return ContainerUtil.mapNotNull(getEntries(project, fileType),
-                new Function<IgnoreEntryOccurrence, VirtualFile>() {
-            @NotNull
-            @Override
-            public VirtualFile fun(@NotNull IgnoreEntryOccurrence entry) {
-                return entry.getFile();
+        try {
+            if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+                final GlobalSearchScope scope = IgnoreSearchScope.get(project);
+                return ContainerUtil.newArrayList(FileBasedIndex.getInstance()
+                        .getContainingFiles(KEY, IgnoreFileTypeKey.createMarker(fileType), scope));
             }
-        });
+        } catch (RuntimeException ignored) {
+        }
+        return ContainerUtil.emptyList();
+    }
+
+    /**
+     * Returns ID of the directory used in the directory-scoped {@link IgnoreFileTypeKey} of the given ignore file.
+     * Rules of {@link GitExcludeFileType} are not relative to the file's directory, so they are not scoped.
+     *
+     * @param fileType type of the ignore file
+     * @param file     ignore file
+     * @return directory ID or <code>0</code> if file cannot be scoped with directory
+     */
+    public static int getDirectoryId(@NotNull IgnoreFileType fileType, @NotNull VirtualFile file) {
+        final VirtualFile parent = file.getParent();
+        if (fileType instanceof GitExcludeFileType || !(parent instanceof VirtualFileWithId)) {
+            return 0;
+        }
+        return ((VirtualFileWithId) parent).getId();
     }
 }
@@ -0,0 +1,368 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent storage of the compiled {@link IgnoreEntryOccurrence} entries placed in the IDE system directory. Stored
+ * entries are used to warm-start {@link IgnoreDirectoryIndex} when the project is opened, so ignored statuses are
+ * available before indexing is finished. Storage is valid only if all of the stored ignore files still exist,
+ * their timestamps and lengths have not changed and no ignore file was created in the meantime. New ignore files are
+ * looked up only in the stored directories which timestamps have changed - including their new subdirectories.
+ * Directories ignored when the storage was written are stored as well, so their statuses are known immediately.
+ * <p>
+ * File starts with the magic number and the format version, followed by the sections of the file types. Each section
+ * contains the language name and the entries - ignore file's URL, timestamp, length and the entry serialized with
+ * {@link IgnoreEntryOccurrence#serialize(DataOutput, IgnoreEntryOccurrence)} prefixed with its length. Sections are
+ * followed by the paths and timestamps of the not ignored directories and the paths of the ignored directories.
+ * <p>
+ * Storage is read at once with {@link FileUtil#loadFileBytes(File)} instead of the memory mapping - content is parsed
+ * sequentially only once, and the mapping kept the file locked on Windows until the buffer was garbage collected,
+ * so the next storage could not be renamed over it.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class IgnoreIndexStorage {
+    /** Logger instance. */
+    private static final Logger LOG = Logger.getInstance(IgnoreIndexStorage.class);
+
+    /** Magic number of the storage file. */
+    private static final int MAGIC = 0x49474E53;
+
+    /** Version of the storage format. */
+    private static final int VERSION = 3;
+
+    /** Storage file. */
+    @NotNull
+    private final File file;
+
+    /** Content of the last written or read storage file. */
+    @Nullable
+    private volatile byte[] content;
+
+    /**
+     * Constructor.
+     *
+     * @param project current project
+     */
+    public IgnoreIndexStorage(@NotNull Project project) {
+        this.file = new File(PathManager.getSystemPath(), "ignore/" + project.getLocationHash() + ".rules");
+    }
+
+    /**
+     * Reads stored entries grouped by the file types and the ignored directories. Directories are checked on the disk,
+     * so it should not be invoked on the event dispatch thread.
+     *
+     * @return stored content or <code>null</code> if storage does not exist or is outdated
+     */
+    @Nullable
+    public Content load() {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            final byte[] bytes = FileUtil.loadFileBytes(file);
+            final Content result = read(bytes);
+            if (result != null) {
+                content = bytes;
+            }
+            return result;
+        } catch (IOException e) {
+            LOG.debug("Cannot read ignore index storage", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes given entries grouped by the file types together with the project's directories. Storage file is not
+     * modified if its content is the same.
+     *
+     * @param entries            entries to store
+     * @param directories        not ignored directories of the project
+     * @param ignoredDirectories ignored directories placed in the not ignored ones
+     */
+    public void save(@NotNull Map<IgnoreFileType, Collection<IgnoreEntryOccurrence>> entries,
+                     @NotNull Collection<VirtualFile> directories,
+                     @NotNull Collection<VirtualFile> ignoredDirectories) {
+        try {
+            final byte[] bytes = write(entries, directories, ignoredDirectories);
+            if (Arrays.equals(bytes, content)) {
+                return;
+            }
+
+            final File temp = new File(file.getPath() + ".tmp");
+            FileUtil.writeToFile(temp, bytes);
+            FileUtil.rename(temp, file);
+            content = bytes;
+        } catch (IOException e) {
+            LOG.warn("Cannot write ignore index storage", e);
+        }
+    }
+
+    /**
+     * Serializes given entries and directories.
+     *
+     * @param entries            entries to store
+     * @param directories        not ignored directories
+     * @param ignoredDirectories ignored directories
+     * @return storage content
+     * @throws IOException I/O exception
+     */
+    @NotNull
+    private static byte[] write(@NotNull Map<IgnoreFileType, Collection<IgnoreEntryOccurrence>> entries,
+                                @NotNull Collection<VirtualFile> directories,
+                                @NotNull Collection<VirtualFile> ignoredDirectories) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+
+        final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        final DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        for (Map.Entry<IgnoreFileType, Collection<IgnoreEntryOccurrence>> section : entries.entrySet()) {
+            out.writeUTF(section.getKey().getIgnoreLanguage().getID());
+            out.writeInt(section.getValue().size());
+            for (IgnoreEntryOccurrence entry : section.getValue()) {
+                final VirtualFile entryFile = entry.getFile();
+                out.writeUTF(entryFile.getUrl());
+                out.writeLong(entryFile.getTimeStamp());
+                out.writeLong(entryFile.getLength());
+
+                entryBytes.reset();
+                IgnoreEntryOccurrence.serialize(entryOut, entry);
+                entryOut.flush();
+                out.writeInt(entryBytes.size());
+                entryBytes.writeTo(out);
+            }
+        }
+
+        out.writeInt(directories.size());
+        for (VirtualFile directory : directories) {
+            out.writeUTF(directory.getPath());
+            out.writeLong(directory.getTimeStamp());
+        }
+        out.writeInt(ignoredDirectories.size());
+        for (VirtualFile directory : ignoredDirectories) {
+            out.writeUTF(directory.getPath());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes entries and directories and verifies if they are up to date.
+     *
+     * @param bytes storage content
+     * @return content or <code>null</code> if storage is outdated
+     * @throws IOException I/O exception
+     */
+    @Nullable
+    private static Content read(@NotNull byte[] bytes) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+
+        final Map<IgnoreFileType, List<IgnoreEntryOccurrence>> result = ContainerUtil.newHashMap();
+        final Set<String> entryPaths = ContainerUtil.newHashSet();
+        final VirtualFileManager virtualFileManager = VirtualFileManager.getInstance();
+        final int sections = in.readInt();
+        for (int i = 0; i < sections; i++) {
+            final IgnoreFileType fileType = getFileType(in.readUTF());
+            if (fileType == null) {
+                return null;
+            }
+
+            final int size = in.readInt();
+            final List<IgnoreEntryOccurrence> entries = ContainerUtil.newArrayListWithCapacity(size);
+            for (int j = 0; j < size; j++) {
+                final VirtualFile entryFile = virtualFileManager.findFileByUrl(in.readUTF());
+                final long timeStamp = in.readLong();
+                final long length = in.readLong();
+                final byte[] entryBytes = new byte[in.readInt()];
+                in.readFully(entryBytes);
+                if (entryFile == null || entryFile.getTimeStamp() != timeStamp || entryFile.getLength() != length) {
+                    return null;
+                }
+
+                final IgnoreEntryOccurrence entry = IgnoreEntryOccurrence.deserialize(
+                        new DataInputStream(new ByteArrayInputStream(entryBytes))
+                );
+                if (entry == null || !entry.getFile().equals(entryFile)) {
+                    return null;
+                }
+                entries.add(entry);
+                entryPaths.add(entryFile.getPath());
+            }
+            result.put(fileType, entries);
+        }
+
+        final Map<String, Long> directories = ContainerUtil.newHashMap();
+        final int directoriesCount = in.readInt();
+        for (int i = 0; i < directoriesCount; i++) {
+            directories.put(in.readUTF(), in.readLong());
+        }
+        final Set<String> ignoredPaths = ContainerUtil.newHashSet();
+        final int ignoredCount = in.readInt();
+        for (int i = 0; i < ignoredCount; i++) {
+            ignoredPaths.add(in.readUTF());
+        }
+
+        for (Map.Entry<String, Long> directory : directories.entrySet()) {
+            final File dir = new File(directory.getKey());
+            if (dir.lastModified() != directory.getValue() &&
+                    hasNewIgnoreFiles(dir, directories.keySet(), ignoredPaths, entryPaths)) {
+                return null;
+            }
+        }
+
+        final List<VirtualFile> ignoredDirectories = ContainerUtil.newArrayListWithCapacity(ignoredPaths.size());
+        final LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
+        for (String path : ignoredPaths) {
+            ContainerUtil.addIfNotNull(ignoredDirectories, localFileSystem.findFileByPath(path));
+        }
+        return new Content(result, ignoredDirectories);
+    }
+
+    /**
+     * Checks if the modified directory contains ignore files that were not stored. New subdirectories, that are
+     * neither stored nor ignored, are checked recursively.
+     *
+     * @param directory    modified directory
+     * @param directories  paths of the stored directories
+     * @param ignoredPaths paths of the ignored directories
+     * @param entryPaths   paths of the stored ignore files
+     * @return directory contains new ignore files
+     */
+    private static boolean hasNewIgnoreFiles(@NotNull File directory, @NotNull Set<String> directories,
+                                             @NotNull Set<String> ignoredPaths, @NotNull Set<String> entryPaths) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return false;
+        }
+
+        final FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+        for (File child : children) {
+            final String path = FileUtil.toSystemIndependentName(child.getPath());
+            if (fileTypeManager.isFileIgnored(child.getName())) {
+                continue;
+            }
+            if (child.isDirectory()) {
+                if (!directories.contains(path) && !ignoredPaths.contains(path) &&
+                        hasNewIgnoreFiles(child, directories, ignoredPaths, entryPaths)) {
+                    return true;
+                }
+            } else if (fileTypeManager.getFileTypeByFileName(child.getName()) instanceof IgnoreFileType &&
+                    !entryPaths.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns file type of the language with the given ID.
+     *
+     * @param id language ID
+     * @return file type or <code>null</code> if language is not supported anymore
+     */
+    @Nullable
+    private static IgnoreFileType getFileType(@NotNull String id) {
+        for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
+            if (language.getID().equals(id)) {
+                return language.getFileType();
+            }
+        }
+        return null;
+    }
+
+    /** Content restored from the storage. */
+    public static final class Content {
+        /** Stored entries grouped by the file types. */
+        @NotNull
+        private final Map<IgnoreFileType, List<IgnoreEntryOccurrence>> entries;
+
+        /** Directories that were ignored when the storage was written. */
+        @NotNull
+        private final List<VirtualFile> ignoredDirectories;
+
+        /**
+         * Constructor.
+         *
+         * @param entries            stored entries
+         * @param ignoredDirectories ignored directories
+         */
+        Content(@NotNull Map<IgnoreFileType, List<IgnoreEntryOccurrence>> entries,
+                @NotNull List<VirtualFile> ignoredDirectories) {
+            this.entries = entries;
+            this.ignoredDirectories = ignoredDirectories;
+        }
+
+        /**
+         * Returns stored entries grouped by the file types.
+         *
+         * @return entries
+         */
+        @NotNull
+        public Map<IgnoreFileType, List<IgnoreEntryOccurrence>> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Returns directories that were ignored when the storage was written. Rules have not changed since then, so
+         * they are still ignored.
+         *
+         * @return ignored directories
+         */
+        @NotNull
+        public List<VirtualFile> getIgnoredDirectories() {
+            return ignoredDirectories;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.tree.IElementType;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.lexer.IgnoreLexerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static mobi.hsz.idea.gitignore.psi.IgnoreTypes.*;
+
+/**
+ * Indexer that reads rules of the ignore file directly from the {@link IgnoreLexerAdapter} tokens, without building
+ * PSI tree. Tokens are consumed following the same grammar as the parser - entries, syntax declarations and comments -
+ * so the rules are the same as the ones visited in the PSI tree. Grammar errors are not recovered, so
+ * <code>null</code> is returned for the content with errors and the PSI tree has to be used instead.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class IgnoreLexerIndexer {
+    /** Private constructor to prevent creating {@link IgnoreLexerIndexer} instance. */
+    private IgnoreLexerIndexer() {
+    }
+
+    /**
+     * Reads rules of the given ignore file content.
+     *
+     * @param file     ignore file
+     * @param fileType type of the ignore file
+     * @param text     content of the ignore file
+     * @return entry with rules or <code>null</code> if content contains grammar errors
+     */
+    @Nullable
+    public static IgnoreEntryOccurrence map(@NotNull VirtualFile file, @NotNull IgnoreFileType fileType,
+                                            @NotNull CharSequence text) {
+        final IgnoreEntryOccurrence result = new IgnoreEntryOccurrence(file);
+        IgnoreBundle.Syntax syntax = fileType.getIgnoreLanguage().getDefaultSyntax();
+
+        final Lexer lexer = new IgnoreLexerAdapter(null);
+        lexer.start(text);
+
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            if (type == CRLF || type == HEADER || type == SECTION || type == COMMENT) {
+                lexer.advance();
+                continue;
+            }
+
+            if (type == SYNTAX_KEY) {
+                lexer.advance();
+                while (lexer.getTokenType() == CRLF || lexer.getTokenType() == COMMENT) {
+                    lexer.advance();
+                }
+                if (lexer.getTokenType() != VALUE) {
+                    return null;
+                }
+                final IgnoreBundle.Syntax found = IgnoreBundle.Syntax.find(lexer.getTokenText());
+                if (found != null) {
+                    syntax = found;
+                }
+                lexer.advance();
+                continue;
+            }
+
+            final int start = lexer.getTokenStart();
+            final boolean negated = type == NEGATION;
+            if (negated) {
+                lexer.advance();
+            }
+            if (lexer.getTokenType() == SLASH) {
+                lexer.advance();
+            }
+
+            int end = readValues(lexer);
+            while (end > -1 && lexer.getTokenType() == SLASH) {
+                final int slashEnd = lexer.getTokenEnd();
+                lexer.advance();
+                if (!isValueStart(lexer.getTokenType())) {
+                    end = slashEnd;
+                    break;
+                }
+                end = readValues(lexer);
+            }
+            if (end < 0) {
+                return null;
+            }
+
+            result.add(text.subSequence(negated ? start + 1 : start, end).toString(), syntax, negated);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads one or more values - plain or in brackets.
+     *
+     * @param lexer lexer placed at the first value
+     * @return end offset of the last value or <code>-1</code> if there is no valid value
+     */
+    private static int readValues(@NotNull Lexer lexer) {
+        int end = -1;
+        while (isValueStart(lexer.getTokenType())) {
+            if (lexer.getTokenType() == VALUE) {
+                end = lexer.getTokenEnd();
+                lexer.advance();
+                continue;
+            }
+
+            lexer.advance();
+            if (lexer.getTokenType() != VALUE) {
+                return -1;
+            }
+            while (lexer.getTokenType() == VALUE) {
+                lexer.advance();
+                if (lexer.getTokenType() == SLASH) {
+                    lexer.advance();
+                }
+            }
+            if (lexer.getTokenType() != BRACKET_RIGHT) {
+                return -1;
+            }
+            end = lexer.getTokenEnd();
+            lexer.advance();
+        }
+        return end;
+    }
+
+    /**
+     * Checks if token starts a value.
+     *
+     * @param type token type
+     * @return token starts a value
+     */
+    private static boolean isValueStart(@Nullable IElementType type) {
+        return type == VALUE || type == BRACKET_LEFT;
+    }
+}
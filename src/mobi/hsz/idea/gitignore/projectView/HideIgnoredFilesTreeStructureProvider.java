@@ -38,6 +38,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Extension for the {@link TreeStructureProvider} that provides the ability to hide ignored files
@@ -79,12 +81,20 @@ public class HideIgnoredFilesTreeStructureProvider implements TreeStructureProvi
             return children;
         }
 
+        final List<VirtualFile> files = ContainerUtil.newArrayList();
+        for (AbstractTreeNode node : children) {
+            if (node instanceof BasePsiNode) {
+                ContainerUtil.addIfNotNull(files, ((BasePsiNode) node).getVirtualFile());
+            }
+        }
+        final Set<VirtualFile> ignored = ignoreManager.classify(files);
+
         return ContainerUtil.filter(children, new Condition<AbstractTreeNode>() {
             @Override
             public boolean value(AbstractTreeNode node) {
                 if (node instanceof BasePsiNode) {
                     final VirtualFile file = ((BasePsiNode) node).getVirtualFile();
-                    if (file == null || (ignoreManager.isFileIgnored(file) && !ignoreManager.isFileTracked(file))) {
+                    if (file == null || (ignored.contains(file) && !ignoreManager.isFileTracked(file))) {
                         return false;
                     }
                 }
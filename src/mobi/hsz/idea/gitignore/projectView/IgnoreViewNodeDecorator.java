@@ -41,6 +41,9 @@ import mobi.hsz.idea.gitignore.settings.IgnoreSettings;
 import mobi.hsz.idea.gitignore.util.Utils;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+import java.util.Set;
+
 import static com.intellij.ui.SimpleTextAttributes.STYLE_SMALLER;
 
 /**
@@ -93,10 +96,11 @@ public class IgnoreViewNodeDecorator implements ProjectViewNodeDecorator {
                     GRAYED_SMALL_ATTRIBUTES
             );
         } else if (ignoreSettings.isHideIgnoredFiles() && file.isDirectory()) {
-            int count = ContainerUtil.filter(file.getChildren(), new Condition<VirtualFile>() {
+            final Set<VirtualFile> ignored = manager.classify(file, Arrays.asList(file.getChildren()));
+            int count = ContainerUtil.filter(ignored, new Condition<VirtualFile>() {
                 @Override
                 public boolean value(VirtualFile file) {
-                    return manager.isFileIgnored(file) && !manager.isFileTracked(file);
+                    return !manager.isFileTracked(file);
                 }
             }).size();
 
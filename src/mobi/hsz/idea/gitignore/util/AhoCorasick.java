@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton that finds all of the given literals contained in the text with a single scan.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public final class AhoCorasick {
+    /** Transitions of the automaton - state and character packed into a single key mapped to the next state. */
+    @NotNull
+    private final TLongIntHashMap transitions = new TLongIntHashMap();
+
+    /** Failure links of the states. */
+    @NotNull
+    private final int[] failures;
+
+    /** Identifiers of the literals recognized in each state, including the ones reachable with failure links. */
+    @NotNull
+    private final int[][] outputs;
+
+    /** Amount of the literals. */
+    private final int size;
+
+    /**
+     * Builds automaton for the given literals. Index of the literal in array is used as its identifier.
+     *
+     * @param literals non-empty literals
+     */
+    public AhoCorasick(@NotNull String[] literals) {
+        this.size = literals.length;
+
+        final List<TIntArrayList> children = new ArrayList<TIntArrayList>();
+        final TIntArrayList chars = new TIntArrayList();
+        final List<TIntArrayList> terminals = new ArrayList<TIntArrayList>();
+        children.add(new TIntArrayList());
+        chars.add(0);
+        terminals.add(new TIntArrayList());
+
+        for (int id = 0; id < literals.length; id++) {
+            int state = 0;
+            for (int i = 0; i < literals[id].length(); i++) {
+                final char c = literals[id].charAt(i);
+                int next = transitions.get(key(state, c));
+                if (next == 0) {
+                    next = chars.size();
+                    transitions.put(key(state, c), next);
+                    children.get(state).add(next);
+                    children.add(new TIntArrayList());
+                    chars.add(c);
+                    terminals.add(new TIntArrayList());
+                }
+                state = next;
+            }
+            terminals.get(state).add(id);
+        }
+
+        final int count = chars.size();
+        this.failures = new int[count];
+        this.outputs = new int[count][];
+        outputs[0] = terminals.get(0).toNativeArray();
+
+        final int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            final int state = queue[head++];
+            final TIntArrayList next = children.get(state);
+            for (int i = 0; i < next.size(); i++) {
+                final int child = next.get(i);
+                final char c = (char) chars.get(child);
+                int failure = 0;
+                if (state != 0) {
+                    failure = failures[state];
+                    while (failure != 0 && transitions.get(key(failure, c)) == 0) {
+                        failure = failures[failure];
+                    }
+                    failure = transitions.get(key(failure, c));
+                }
+                failures[child] = failure;
+
+                final TIntArrayList output = terminals.get(child);
+                output.add(outputs[failure]);
+                outputs[child] = output.toNativeArray();
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Scans the text and marks identifiers of the contained literals.
+     *
+     * @param text  text to scan
+     * @param found flags of the found literals, has to be at least {@link #size()} long
+     * @return amount of the distinct literals found
+     */
+    public int find(@NotNull CharSequence text, @NotNull boolean[] found) {
+        int result = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next = transitions.get(key(state, c));
+            while (next == 0 && state != 0) {
+                state = failures[state];
+                next = transitions.get(key(state, c));
+            }
+            state = next;
+            for (int id : outputs[state]) {
+                if (!found[id]) {
+                    found[id] = true;
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scans the text and records the end of the last occurrence of each contained literal, so it can be checked if
+     * literal is placed after the given offset of the text.
+     *
+     * @param text text to scan
+     * @param ends exclusive ends of the last occurrences, has to be at least {@link #size()} long and filled with
+     *             zeros, which are left for the literals that were not found
+     */
+    public void findLast(@NotNull CharSequence text, @NotNull int[] ends) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next = transitions.get(key(state, c));
+            while (next == 0 && state != 0) {
+                state = failures[state];
+                next = transitions.get(key(state, c));
+            }
+            state = next;
+            for (int id : outputs[state]) {
+                ends[id] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Returns amount of the literals recognized by automaton.
+     *
+     * @return literals count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Packs state and character into a single transition key.
+     *
+     * @param state current state
+     * @param c     character
+     * @return transition key
+     */
+    private static long key(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+}
@@ -26,6 +26,7 @@ package mobi.hsz.idea.gitignore.util;
 
 import com.intellij.util.containers.ConcurrentWeakHashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.ConcurrentMap;
 
@@ -78,6 +79,17 @@ public class CachedConcurrentMap<K, V> {
         return map.get(key);
     }
 
+    /**
+     * Returns value set under the given key without invoking {@link DataFetcher#fetch(Object)}.
+     *
+     * @param key data key
+     * @return value or <code>null</code> if not cached
+     */
+    @Nullable
+    public V peek(@NotNull K key) {
+        return map.get(key);
+    }
+
     /**
      * Removes value using given key.
      *
@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler that coalesces change signals into a single run of the task. The first {@link #request()} schedules
+ * the task after {@link #delay} milliseconds and the following ones are merged with it. Requests received while
+ * the task is running do not start another run in parallel - they are remembered and result in exactly one more run
+ * after the current one finishes. Task is invoked on the pooled thread.
+ * <p>
+ * Every scheduled run gets a new generation stored together with the phase in {@link #state}, so the run that was
+ * cancelled after it was already handed off to the pooled thread is recognized as stale and ignored.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class CoalescingScheduler {
+    /** No run is scheduled. */
+    private static final int IDLE = 0;
+
+    /** Run is scheduled. */
+    private static final int SCHEDULED = 1;
+
+    /** Task is running. */
+    private static final int RUNNING = 2;
+
+    /** Task is running and another run was requested meanwhile. */
+    private static final int RUNNING_REQUESTED = 3;
+
+    /** Bits of the {@link #state} used by the phase. */
+    private static final int PHASE_BITS = 2;
+
+    /** Mask of the phase in the {@link #state}. */
+    private static final long PHASE_MASK = (1 << PHASE_BITS) - 1;
+
+    /** Task to run. */
+    @NotNull
+    private final Runnable task;
+
+    /** Time to wait for another signals before running the task. */
+    private final int delay;
+
+    /** Current generation of the scheduled run shifted by {@link #PHASE_BITS} together with the current phase. */
+    @NotNull
+    private final AtomicLong state = new AtomicLong(IDLE);
+
+    /** Current scheduled run. */
+    @Nullable
+    private volatile ScheduledFuture<?> future;
+
+    /**
+     * Constructor.
+     *
+     * @param task  task to run
+     * @param delay time to wait for another signals before running the task
+     */
+    public CoalescingScheduler(@NotNull Runnable task, int delay) {
+        this.task = task;
+        this.delay = delay;
+    }
+
+    /** Signals the change that requires running the task. */
+    public void request() {
+        while (true) {
+            final long current = state.get();
+            switch (phase(current)) {
+                case IDLE:
+                    final long generation = generation(current) + 1;
+                    if (state.compareAndSet(current, state(generation, SCHEDULED))) {
+                        schedule(generation);
+                        return;
+                    }
+                    break;
+                case RUNNING:
+                    if (state.compareAndSet(current, state(generation(current), RUNNING_REQUESTED))) {
+                        return;
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /** Cancels the scheduled run. Task that is already running is finished, but is not invoked again. */
+    public void cancel() {
+        final ScheduledFuture<?> future = this.future;
+        if (future != null) {
+            future.cancel(false);
+        }
+
+        while (true) {
+            final long current = state.get();
+            switch (phase(current)) {
+                case SCHEDULED:
+                    if (state.compareAndSet(current, state(generation(current) + 1, IDLE))) {
+                        return;
+                    }
+                    break;
+                case RUNNING_REQUESTED:
+                    if (state.compareAndSet(current, state(generation(current), RUNNING))) {
+                        return;
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Checks if task is scheduled or running.
+     *
+     * @return task is pending
+     */
+    public boolean isPending() {
+        return phase(state.get()) != IDLE;
+    }
+
+    /**
+     * Schedules run of the given generation after the {@link #delay}. Run is handed off to the pooled thread.
+     *
+     * @param generation generation of the run
+     */
+    private void schedule(final long generation) {
+        future = JobScheduler.getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(generation);
+                    }
+                });
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the task and schedules another run if it was requested in the meantime. Stale runs of the previous
+     * generations are ignored.
+     *
+     * @param generation generation of the run
+     */
+    private void execute(long generation) {
+        if (!state.compareAndSet(state(generation, SCHEDULED), state(generation, RUNNING))) {
+            return;
+        }
+
+        try {
+            task.run();
+        } finally {
+            while (true) {
+                if (state.compareAndSet(state(generation, RUNNING), state(generation, IDLE))) {
+                    break;
+                }
+                if (state.compareAndSet(state(generation, RUNNING_REQUESTED), state(generation + 1, SCHEDULED))) {
+                    schedule(generation + 1);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns phase stored in the state.
+     *
+     * @param state state value
+     * @return phase
+     */
+    private static int phase(long state) {
+        return (int) (state & PHASE_MASK);
+    }
+
+    /**
+     * Returns generation stored in the state.
+     *
+     * @param state state value
+     * @return generation
+     */
+    private static long generation(long state) {
+        return state >>> PHASE_BITS;
+    }
+
+    /**
+     * Packs generation and phase into the state value.
+     *
+     * @param generation generation of the run
+     * @param phase      phase
+     * @return state value
+     */
+    private static long state(long generation, int phase) {
+        return (generation << PHASE_BITS) | phase;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.util.containers.SLRUMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache with the limited size based on the {@link SLRUMap}. Cache is split into segments guarded with
+ * separate locks, so concurrent readers of different keys do not block each other.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class ConcurrentLruCache<K, V> {
+    /** Default amount of segments. */
+    private static final int SEGMENTS = 16;
+
+    /** Cache segments. */
+    @NotNull
+    private final Segment<K, V>[] segments;
+
+    /** Cache hits counter. */
+    @NotNull
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Cache misses counter. */
+    @NotNull
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Evicted entries counter. */
+    @NotNull
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity max amount of the cached entries
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int capacity) {
+        final int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<K, V>(segmentCapacity, evictions);
+        }
+    }
+
+    /**
+     * Returns value stored under the given key.
+     *
+     * @param key cache key
+     * @return value or <code>null</code> if not cached
+     */
+    @Nullable
+    public V get(@NotNull K key) {
+        final Segment<K, V> segment = segmentFor(key);
+        final V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Stores value under the given key. If cache is full, the least recently used entry is evicted.
+     *
+     * @param key   cache key
+     * @param value value to store
+     * @return stored value
+     */
+    @NotNull
+    public V put(@NotNull K key, @NotNull V value) {
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.delete(key);
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes value stored under the given key.
+     *
+     * @param key cache key
+     */
+    public void remove(@NotNull K key) {
+        final Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.delete(key);
+        }
+    }
+
+    /** Removes all cached entries. */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns amount of the cached entries.
+     *
+     * @return cache size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entrySet().size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns amount of the cache hits.
+     *
+     * @return hits count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns amount of the cache misses.
+     *
+     * @return misses count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns ratio of the cache hits to all lookups.
+     *
+     * @return hit rate between <code>0</code> and <code>1</code>
+     */
+    public double getHitRate() {
+        final long hits = this.hits.get();
+        final long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns amount of the evicted entries.
+     *
+     * @return evictions count
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns segment responsible for the given key.
+     *
+     * @param key cache key
+     * @return segment
+     */
+    @NotNull
+    private Segment<K, V> segmentFor(@NotNull K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Returns cache statistics.
+     *
+     * @return statistics
+     */
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+
+    /**
+     * Single cache segment - {@link SLRUMap} split equally into the protected and probational queues that counts
+     * entries dropped by the eviction.
+     */
+    private static class Segment<K, V> extends SLRUMap<K, V> {
+        /** Evicted entries counter. */
+        @NotNull
+        private final AtomicLong evictions;
+
+        /** Entry is removed explicitly, so it is not counted as evicted. */
+        private boolean deleting;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity  max amount of entries in segment
+         * @param evictions evicted entries counter
+         */
+        Segment(int capacity, @NotNull AtomicLong evictions) {
+            super(capacity / 2, capacity - capacity / 2);
+            this.evictions = evictions;
+        }
+
+        /**
+         * Removes entry without counting it as evicted.
+         *
+         * @param key cache key
+         */
+        void delete(@NotNull K key) {
+            deleting = true;
+            try {
+                remove(key);
+            } finally {
+                deleting = false;
+            }
+        }
+
+        /**
+         * Counts entry dropped from the probational queue if it was not removed explicitly.
+         *
+         * @param key   cache key
+         * @param value dropped value
+         */
+        @Override
+        protected void onDropFromCache(K key, V value) {
+            if (!deleting) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+}
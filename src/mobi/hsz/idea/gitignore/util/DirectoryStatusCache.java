@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tree-structured cache of the files ignore statuses. Statuses are grouped in nodes of their parent directories and
+ * each node is linked with the nodes of its subdirectories, so changes of the ignore file invalidate only the subtree
+ * of its directory by walking the links, and ignored directory short-circuits all of its children. Entries stay valid
+ * until they are invalidated - files are held with weak references. Every invalidation increments the generation, so
+ * statuses computed with the rules read before the invalidation are not stored.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class DirectoryStatusCache {
+    /** Nodes of the directories. Every node is linked with the node of its parent directory. */
+    @NotNull
+    private final ConcurrentMap<VirtualFile, Node> nodes = ContainerUtil.createConcurrentWeakMap();
+
+    /** Lock of the changes of the tree structure. */
+    @NotNull
+    private final Object lock = new Object();
+
+    /** Generation incremented by every invalidation. */
+    @NotNull
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns current generation of the cache. It has to be read before the status is computed and passed to
+     * {@link #set(VirtualFile, boolean, long)}.
+     *
+     * @return generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns cached status of the file. If status of the file's parent directory is cached as ignored, file is
+     * ignored as well.
+     *
+     * @param file file to check
+     * @return cached status or <code>null</code> if status is unknown
+     */
+    @Nullable
+    public Boolean get(@NotNull VirtualFile file) {
+        final VirtualFile parent = file.getParent();
+        if (parent == null) {
+            return null;
+        }
+
+        final Node node = nodes.get(parent);
+        final Boolean status = node == null ? null : node.statuses.get(file);
+        if (status != null) {
+            return status;
+        }
+
+        final VirtualFile grandParent = parent.getParent();
+        final Node parentNode = grandParent == null ? null : nodes.get(grandParent);
+        return parentNode != null && Boolean.TRUE.equals(parentNode.statuses.get(parent)) ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Stores status of the file. Status is dropped if cache was invalidated since the given generation was read -
+     * it could be computed with the outdated rules. Invalidation increments generation before removing the statuses,
+     * so generation is verified again after the status is stored.
+     *
+     * @param file       file
+     * @param status     file is ignored
+     * @param generation generation read with {@link #getGeneration()} before the status was computed
+     * @return given status
+     */
+    public boolean set(@NotNull VirtualFile file, boolean status, long generation) {
+        final VirtualFile parent = file.getParent();
+        if (parent == null) {
+            return status;
+        }
+
+        Node node = nodes.get(parent);
+        if (node == null) {
+            synchronized (lock) {
+                node = getOrCreateNode(parent);
+            }
+        }
+        if (this.generation.get() == generation) {
+            node.statuses.put(file, status);
+            if (this.generation.get() != generation) {
+                node.statuses.remove(file);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Invalidates statuses of all files placed in the given directory and its subdirectories. Status of
+     * the directory itself is kept.
+     *
+     * @param directory root of the invalidated subtree
+     */
+    public void invalidate(@NotNull VirtualFile directory) {
+        generation.incrementAndGet();
+        synchronized (lock) {
+            final Node node = nodes.remove(directory);
+            if (node == null) {
+                return;
+            }
+
+            final VirtualFile parent = directory.getParent();
+            final Node parentNode = parent == null ? null : nodes.get(parent);
+            if (parentNode != null) {
+                parentNode.children.remove(directory);
+            }
+            removeChildren(node);
+        }
+    }
+
+    /**
+     * Invalidates status of the file. If file is a directory, statuses of its whole subtree are invalidated too.
+     *
+     * @param file file to invalidate
+     */
+    public void invalidateFile(@NotNull VirtualFile file) {
+        generation.incrementAndGet();
+        final VirtualFile parent = file.getParent();
+        if (parent != null) {
+            final Node node = nodes.get(parent);
+            if (node != null) {
+                node.statuses.remove(file);
+            }
+        }
+        if (file.isDirectory()) {
+            invalidate(file);
+        }
+    }
+
+    /** Removes all cached statuses. */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (lock) {
+            nodes.clear();
+        }
+    }
+
+    /**
+     * Returns node of the directory. Missing nodes of the directory and its ancestors are created, so every node is
+     * reachable from the nodes of all of its ancestors. Has to be called with the {@link #lock}.
+     *
+     * @param directory directory
+     * @return directory node
+     */
+    @NotNull
+    private Node getOrCreateNode(@NotNull VirtualFile directory) {
+        Node node = nodes.get(directory);
+        if (node == null) {
+            node = new Node();
+            final VirtualFile parent = directory.getParent();
+            if (parent != null) {
+                getOrCreateNode(parent).children.put(directory, node);
+            }
+            nodes.put(directory, node);
+        }
+        return node;
+    }
+
+    /**
+     * Removes nodes of all of the node's subdirectories. Has to be called with the {@link #lock}.
+     *
+     * @param node removed node
+     */
+    private void removeChildren(@NotNull Node node) {
+        for (VirtualFile child : node.children.keySet()) {
+            final Node childNode = nodes.remove(child);
+            if (childNode != null) {
+                removeChildren(childNode);
+            }
+        }
+    }
+
+    /** Node of the directory. */
+    private static final class Node {
+        /** Statuses of the directory's children. */
+        @NotNull
+        final ConcurrentMap<VirtualFile, Boolean> statuses = ContainerUtil.createConcurrentWeakMap();
+
+        /** Nodes of the subdirectories. */
+        @NotNull
+        final ConcurrentMap<VirtualFile, Node> children = ContainerUtil.createConcurrentWeakMap();
+    }
+}
@@ -47,11 +47,20 @@ import java.util.regex.PatternSyntaxException;
  * @since 0.5
  */
 public class Glob {
-    /** Cache map that holds processed regex statements to the glob rules. */
-    private static final WeakHashMap<String, String> GLOBS_CACHE = new WeakHashMap<String, String>();
+    /** Max amount of the entries stored in each cache. */
+    private static final int CACHE_CAPACITY = 4096;
 
-    /** Cache map that holds compiled regex. */
-    private static final WeakHashMap<String, Pattern> PATTERNS_CACHE = new WeakHashMap<String, Pattern>();
+    /** Cache that holds processed regex statements to the glob rules. */
+    private static final ConcurrentLruCache<RuleKey, String> GLOBS_CACHE =
+            new ConcurrentLruCache<RuleKey, String>(CACHE_CAPACITY);
+
+    /** Cache that holds compiled regex. */
+    private static final ConcurrentLruCache<RuleKey, Pattern> PATTERNS_CACHE =
+            new ConcurrentLruCache<RuleKey, Pattern>(CACHE_CAPACITY);
+
+    /** Cache that holds compiled {@link GlobMatcher} instances. */
+    private static final ConcurrentLruCache<RuleKey, GlobMatcher> MATCHERS_CACHE =
+            new ConcurrentLruCache<RuleKey, GlobMatcher>(CACHE_CAPACITY);
 
     /** Private constructor to prevent creating {@link Glob} instance. */
     private Glob() {
@@ -191,12 +200,15 @@ public class Glob {
     public static Pattern createPattern(@NotNull String rule,
                                         @NotNull IgnoreBundle.Syntax syntax,
                                         boolean acceptChildren) {
+        final RuleKey key = new RuleKey(rule, syntax, acceptChildren);
+        final Pattern cached = PATTERNS_CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
         final String regex = syntax.equals(IgnoreBundle.Syntax.GLOB) ? createRegex(rule, acceptChildren) : rule;
         try {
-            if (!PATTERNS_CACHE.containsKey(regex)) {
-                PATTERNS_CACHE.put(regex, Pattern.compile(regex));
-            }
-            return PATTERNS_CACHE.get(regex);
+            return PATTERNS_CACHE.put(key, Pattern.compile(regex));
         } catch (PatternSyntaxException e) {
             return null;
         }
@@ -225,6 +237,51 @@ public class Glob {
         return createPattern(entry.getValue(), entry.getSyntax(), acceptChildren);
     }
 
+    /**
+     * Creates {@link GlobMatcher} using glob rule. Glob rules are compiled to the native program if possible, regex
+     * rules and globs that cannot be handled natively are matched with regex {@link Pattern}.
+     *
+     * @param rule           rule value
+     * @param syntax         rule syntax
+     * @param acceptChildren Matches directory children
+     * @return {@link GlobMatcher} instance
+     */
+    @Nullable
+    public static GlobMatcher createMatcher(@NotNull String rule,
+                                            @NotNull IgnoreBundle.Syntax syntax,
+                                            boolean acceptChildren) {
+        final RuleKey key = new RuleKey(rule, syntax, acceptChildren);
+        final GlobMatcher cached = MATCHERS_CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        GlobMatcher matcher = null;
+        if (syntax.equals(IgnoreBundle.Syntax.GLOB)) {
+            matcher = GlobMatcher.compile(rule, acceptChildren);
+        }
+        if (matcher == null) {
+            final Pattern pattern = createPattern(rule, syntax, acceptChildren);
+            if (pattern == null) {
+                return null;
+            }
+            matcher = GlobMatcher.create(pattern);
+        }
+
+        return MATCHERS_CACHE.put(key, matcher);
+    }
+
+    /**
+     * Creates {@link GlobMatcher} using {@link IgnoreEntry}.
+     *
+     * @param entry {@link IgnoreEntry}
+     * @return {@link GlobMatcher} instance
+     */
+    @Nullable
+    public static GlobMatcher createMatcher(@NotNull IgnoreEntry entry) {
+        return createMatcher(entry.getValue(), entry.getSyntax(), false);
+    }
+
     /**
      * Creates regex {@link String} using glob rule.
      *
@@ -235,7 +292,8 @@ public class Glob {
     @NotNull
     public static String createRegex(@NotNull String glob, boolean acceptChildren) {
         glob = glob.trim();
-        String cached = GLOBS_CACHE.get(glob);
+        final RuleKey key = new RuleKey(glob, IgnoreBundle.Syntax.GLOB, acceptChildren);
+        final String cached = GLOBS_CACHE.get(key);
         if (cached != null) {
             return cached;
         }
@@ -379,14 +437,74 @@ public class Glob {
         }
 
         sb.append('$');
-        GLOBS_CACHE.put(glob, sb.toString());
 
-        return sb.toString();
+        return GLOBS_CACHE.put(key, sb.toString());
     }
 
-    /** Clears {@link Glob#GLOBS_CACHE} cache. */
+    /**
+     * Clears {@link Glob#GLOBS_CACHE}, {@link Glob#PATTERNS_CACHE} and {@link Glob#MATCHERS_CACHE} caches together with
+     * the matching results cached by {@link MatcherUtil}.
+     */
     public static void clearCache() {
         GLOBS_CACHE.clear();
         PATTERNS_CACHE.clear();
+        MATCHERS_CACHE.clear();
+        MatcherUtil.clearCache();
+    }
+
+    /** Key of the cached rules. */
+    private static class RuleKey {
+        /** Rule value. */
+        @NotNull
+        private final String rule;
+
+        /** Rule syntax. */
+        @NotNull
+        private final IgnoreBundle.Syntax syntax;
+
+        /** Matches directory children. */
+        private final boolean acceptChildren;
+
+        /** Precalculated hashCode. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param rule           rule value
+         * @param syntax         rule syntax
+         * @param acceptChildren matches directory children
+         */
+        RuleKey(@NotNull String rule, @NotNull IgnoreBundle.Syntax syntax, boolean acceptChildren) {
+            this.rule = rule;
+            this.syntax = syntax;
+            this.acceptChildren = acceptChildren;
+            this.hashCode = (rule.hashCode() * 31 + syntax.hashCode()) * 31 + (acceptChildren ? 1 : 0);
+        }
+
+        /**
+         * Checks if given object is equal to current {@link RuleKey} instance.
+         *
+         * @param obj to check
+         * @return objects are equal.
+         */
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof RuleKey)) {
+                return false;
+            }
+            final RuleKey key = (RuleKey) obj;
+            return acceptChildren == key.acceptChildren && syntax == key.syntax && rule.equals(key.rule);
+        }
+
+        /**
+         * Returns precalculated hashCode.
+         *
+         * @return hashCode
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
@@ -0,0 +1,819 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Native matcher for the ignore rules. Glob rules are compiled into a short program of path instructions (literals,
+ * single-segment stars, double stars, character classes) that is evaluated in a single pass over the path without any
+ * regex backtracking. Program follows exactly the same rules as {@link Glob#createRegex(String, boolean)}.
+ * Rules that cannot be represented natively (i.e. {@link mobi.hsz.idea.gitignore.IgnoreBundle.Syntax#REGEXP}) are
+ * matched with the regular {@link Pattern}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public final class GlobMatcher {
+    /** Generator of the unique rule identifiers. */
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /** Per-thread buffers used by the program evaluation, so matching does not allocate any memory. */
+    private static final ThreadLocal<boolean[][]> BUFFERS = new ThreadLocal<boolean[][]>() {
+        @Override
+        protected boolean[][] initialValue() {
+            return new boolean[2][256];
+        }
+    };
+
+    /** Unique identifier of the compiled rule. */
+    private final int id = COUNTER.incrementAndGet();
+
+    /** Source of the rule - glob or regex. */
+    @NotNull
+    private final String source;
+
+    /** Compiled native program or <code>null</code> if {@link #pattern} is used. */
+    @Nullable
+    private final Instruction[] program;
+
+    /** Regex pattern used if rule could not be compiled natively. */
+    @Nullable
+    private final Pattern pattern;
+
+    /** Per-thread {@link Matcher} instances of the {@link #pattern}. */
+    @Nullable
+    private final ThreadLocal<Matcher> matchers;
+
+    /** Fast path shape recognized in {@link #program}. */
+    @NotNull
+    private final Shape shape;
+
+    /** Literal used by the {@link #shape} fast path. */
+    @Nullable
+    private final String literal;
+
+    /** Fast path accepts additional trailing slash. */
+    private final boolean optionalSlash;
+
+    /** Rule classification. */
+    @NotNull
+    private final Kind kind;
+
+    /** Key used for the hash lookups of the classified rule. */
+    @Nullable
+    private final String key;
+
+    /** Classified rule matches directories only. */
+    private final boolean directoryOnly;
+
+    /** Literals that have to be contained by every matching path. */
+    @NotNull
+    private final String[] literals;
+
+    /** Classification of the rules that can be evaluated with hash lookups. */
+    public enum Kind {
+        /** Extension rule - file name ends with the key, i.e. <code>*.log</code>. */
+        EXTENSION,
+        /** Basename rule - file name is equal to the key, i.e. <code>node_modules</code>. */
+        NAME,
+        /** Anchored literal path - relative path is equal to the key, i.e. <code>/build/libs</code>. */
+        PATH,
+        /** Rule has to be evaluated with {@link #matches(CharSequence)}. */
+        COMPLEX
+    }
+
+    /** Shapes of the most common rules that can be matched with simple string comparisons. */
+    private enum Shape {
+        /** Whole path has to be equal to the literal, i.e. <code>/dir/file.txt</code>. */
+        EXACT,
+        /** Path has to end with the literal preceded with slash, i.e. <code>node_modules</code>. */
+        NAME,
+        /** Path has to end with the literal, i.e. <code>*.log</code>. */
+        SUFFIX,
+        /** Program has to be evaluated. */
+        NONE
+    }
+
+    /** Types of the program instructions. */
+    private enum Type {
+        /** Literal text - <code>abc</code>. */
+        LITERAL,
+        /** Any single character - <code>.</code>. */
+        ANY_CHAR,
+        /** Character class - <code>[a-z]</code>. */
+        CLASS,
+        /** Zero or more characters in the single segment - <code>[^/]*</code>. */
+        STAR,
+        /** One or more characters in the single segment - <code>[^/]+</code>. */
+        STAR_PLUS,
+        /** Zero or more characters - <code>.*</code>. */
+        ANY,
+        /** One or more characters - <code>.+</code>. */
+        ANY_PLUS,
+        /** Zero or more directories - <code>(?:[^/]*&#47;)*</code>. */
+        DIRS,
+        /** Optional trailing slash - <code>/?</code>. */
+        OPTIONAL_SLASH,
+        /** Optional children of the directory - <code>(?:&#47;.*)?</code>. */
+        CHILDREN
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source  rule source
+     * @param program native program
+     * @param pattern regex pattern
+     */
+    private GlobMatcher(@NotNull String source, @Nullable Instruction[] program, @Nullable final Pattern pattern) {
+        this.source = source;
+        this.program = program;
+        this.pattern = pattern;
+        this.matchers = pattern == null ? null : new ThreadLocal<Matcher>() {
+            @Override
+            protected Matcher initialValue() {
+                return pattern.matcher("");
+            }
+        };
+
+        Shape shape = Shape.NONE;
+        String literal = null;
+        boolean optionalSlash = false;
+        if (program != null && program.length > 0) {
+            int length = program.length;
+            if (program[length - 1].type == Type.OPTIONAL_SLASH) {
+                optionalSlash = true;
+                length--;
+            }
+            if (length > 0 && program[length - 1].type == Type.LITERAL) {
+                literal = program[length - 1].literal;
+                if (length == 1) {
+                    shape = Shape.EXACT;
+                } else if (length == 2 && program[0].type == Type.DIRS) {
+                    shape = Shape.NAME;
+                } else if (length == 2 && program[0].type == Type.ANY) {
+                    shape = Shape.SUFFIX;
+                }
+            }
+        }
+        this.shape = shape;
+        this.literal = shape == Shape.NONE ? null : literal;
+        this.optionalSlash = shape != Shape.NONE && optionalSlash;
+
+        Kind kind = Kind.COMPLEX;
+        String key = null;
+        boolean directoryOnly = false;
+        if (literal != null && shape != Shape.NONE) {
+            directoryOnly = !optionalSlash && literal.endsWith("/");
+            if (directoryOnly || (optionalSlash && !literal.endsWith("/"))) {
+                key = directoryOnly ? literal.substring(0, literal.length() - 1) : literal;
+                final boolean segment = key.length() > 0 && key.indexOf('/') == -1;
+                if (shape == Shape.EXACT && key.length() > 0) {
+                    kind = Kind.PATH;
+                } else if (shape == Shape.NAME && segment) {
+                    kind = Kind.NAME;
+                } else if (shape == Shape.SUFFIX && segment && key.charAt(0) == '.') {
+                    kind = Kind.EXTENSION;
+                }
+            }
+        }
+        this.kind = kind;
+        this.key = kind == Kind.COMPLEX ? null : key;
+        this.directoryOnly = kind != Kind.COMPLEX && directoryOnly;
+
+        final List<String> literals = new ArrayList<String>();
+        if (program != null) {
+            for (Instruction instruction : program) {
+                if (instruction.type == Type.LITERAL) {
+                    literals.add(instruction.literal);
+                }
+            }
+        }
+        this.literals = literals.toArray(new String[literals.size()]);
+    }
+
+    /**
+     * Creates {@link GlobMatcher} that uses given regex {@link Pattern}.
+     *
+     * @param pattern regex pattern
+     * @return matcher
+     */
+    @NotNull
+    public static GlobMatcher create(@NotNull Pattern pattern) {
+        return new GlobMatcher(pattern.pattern(), null, pattern);
+    }
+
+    /**
+     * Compiles glob rule into the native program. Returns <code>null</code> if rule contains constructions that
+     * cannot be handled natively and should be passed to {@link Glob#createRegex(String, boolean)}.
+     *
+     * @param glob           rule
+     * @param acceptChildren matches directory children
+     * @return compiled matcher or <code>null</code>
+     */
+    @Nullable
+    public static GlobMatcher compile(@NotNull String glob, boolean acceptChildren) {
+        final String rule = glob.trim();
+        if (rule.indexOf('{') > -1 || rule.indexOf('}') > -1) {
+            return null;
+        }
+
+        final ProgramBuilder builder = new ProgramBuilder();
+        final StringBuilder bracketContent = new StringBuilder();
+        boolean escape = false, star = false, doubleStar = false, bracket = false;
+        int beginIndex = 0;
+
+        if (rule.startsWith(Constants.DOUBLESTAR)) {
+            builder.add(Type.DIRS);
+            beginIndex = 2;
+            doubleStar = true;
+        } else if (rule.startsWith("*/")) {
+            builder.add(Type.STAR);
+            beginIndex = 1;
+            star = true;
+        } else if (rule.startsWith(Constants.STAR)) {
+            builder.add(Type.ANY);
+        } else if (rule.startsWith("/")) {
+            beginIndex = 1;
+        } else {
+            int slashes = 0;
+            for (int i = 0; i < rule.length(); i++) {
+                if (rule.charAt(i) == '/') {
+                    slashes++;
+                }
+            }
+            if (slashes == 0 || (slashes == 1 && rule.endsWith("/"))) {
+                builder.add(Type.DIRS);
+            }
+        }
+
+        for (int i = beginIndex; i < rule.length(); i++) {
+            final char ch = rule.charAt(i);
+            if (bracket && ch != ']') {
+                bracketContent.append(ch);
+                continue;
+            } else if (doubleStar) {
+                doubleStar = false;
+                if (ch == '/') {
+                    builder.add(Type.DIRS);
+                    continue;
+                } else {
+                    builder.add(Type.STAR);
+                }
+            }
+
+            if (ch == '*') {
+                if (escape) {
+                    builder.append(ch);
+                    escape = false;
+                    star = false;
+                } else if (star) {
+                    final char prev = builder.lastChar();
+                    if (prev == '^' || prev == '/') {
+                        doubleStar = true;
+                    } else {
+                        builder.add(Type.STAR);
+                    }
+                    star = false;
+                } else {
+                    star = true;
+                }
+                continue;
+            } else if (star) {
+                builder.add(Type.STAR);
+                star = false;
+            }
+
+            switch (ch) {
+
+                case '\\':
+                    if (escape) {
+                        builder.append(ch);
+                        escape = false;
+                    } else {
+                        escape = true;
+                    }
+                    break;
+
+                case '?':
+                    if (escape) {
+                        builder.append(ch);
+                        escape = false;
+                    } else {
+                        builder.add(Type.ANY_CHAR);
+                    }
+                    break;
+
+                case '[':
+                    if (escape) {
+                        builder.append(ch);
+                        escape = false;
+                    } else {
+                        bracket = true;
+                        bracketContent.setLength(0);
+                    }
+                    break;
+
+                case ']':
+                    if (bracket) {
+                        final Instruction characterClass = Instruction.createClass(bracketContent);
+                        if (characterClass == null) {
+                            return null;
+                        }
+                        builder.add(characterClass);
+                    } else {
+                        builder.append(ch);
+                    }
+                    bracket = false;
+                    escape = false;
+                    break;
+
+                default:
+                    escape = false;
+                    builder.append(ch);
+
+            }
+        }
+
+        if (bracket) {
+            return null;
+        }
+
+        if (star || doubleStar) {
+            if (builder.lastChar() == '/') {
+                if (acceptChildren) {
+                    builder.add(Type.ANY_PLUS);
+                } else {
+                    builder.add(Type.STAR_PLUS);
+                    builder.add(Type.OPTIONAL_SLASH);
+                }
+            } else {
+                builder.add(Type.STAR);
+                builder.add(Type.OPTIONAL_SLASH);
+            }
+        } else {
+            if (builder.lastChar() == '/') {
+                if (acceptChildren) {
+                    builder.add(Type.STAR);
+                }
+            } else {
+                builder.add(acceptChildren ? Type.CHILDREN : Type.OPTIONAL_SLASH);
+            }
+        }
+
+        return new GlobMatcher(rule, builder.build(), null);
+    }
+
+    /**
+     * Checks if given path matches the rule. Method is thread-safe and does not allocate memory - native programs are
+     * evaluated with per-thread buffers and regex rules use per-thread {@link Matcher} instances. Regex rules are
+     * searched with {@link Matcher#find()} like in {@link MatcherUtil#match(Matcher, String)}, so unanchored rules
+     * match any part of the path.
+     *
+     * @param path relative path to check
+     * @return path matches
+     */
+    public boolean matches(@NotNull CharSequence path) {
+        if (program == null) {
+            if (matchers == null) {
+                return false;
+            }
+            PerformanceStatistics.increment(PerformanceStatistics.Counter.REGEX_EXECUTIONS);
+            return matchers.get().reset(path).find();
+        }
+
+        final int length = path.length();
+        if (shape != Shape.NONE) {
+            return matchesShape(path, length) ||
+                    (optionalSlash && length > 0 && path.charAt(length - 1) == '/' && matchesShape(path, length - 1));
+        }
+
+        boolean[][] buffers = BUFFERS.get();
+        if (buffers[0].length <= length) {
+            buffers = new boolean[2][Math.max(length + 1, buffers[0].length * 2)];
+            BUFFERS.set(buffers);
+        }
+        boolean[] current = buffers[0];
+        boolean[] next = buffers[1];
+        Arrays.fill(current, 0, length + 1, false);
+        current[0] = true;
+        for (Instruction instruction : program) {
+            if (!instruction.apply(path, current, next)) {
+                return false;
+            }
+            final boolean[] swap = current;
+            current = next;
+            next = swap;
+        }
+        return current[length];
+    }
+
+    /**
+     * Checks if the path's prefix of the given length matches {@link #shape}.
+     *
+     * @param path path to check
+     * @param end  length of the path's prefix
+     * @return prefix matches
+     */
+    private boolean matchesShape(@NotNull CharSequence path, int end) {
+        assert literal != null;
+        final int start = end - literal.length();
+        if (start < 0 || !regionMatches(path, start, literal)) {
+            return false;
+        }
+        switch (shape) {
+            case EXACT:
+                return start == 0;
+            case NAME:
+                return start == 0 || path.charAt(start - 1) == '/';
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Checks if rule is matched natively or with the regex.
+     *
+     * @return rule is matched natively
+     */
+    public boolean isNative() {
+        return program != null;
+    }
+
+    /**
+     * Returns rule's classification.
+     *
+     * @return kind
+     */
+    @NotNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns key used for the hash lookups of the classified rule: extension with leading dot for
+     * {@link Kind#EXTENSION}, file name for {@link Kind#NAME} and relative path for {@link Kind#PATH}.
+     *
+     * @return lookup key or <code>null</code> for {@link Kind#COMPLEX}
+     */
+    @Nullable
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if classified rule matches directories only, i.e. <code>build/</code>.
+     *
+     * @return rule matches directories only
+     */
+    public boolean isDirectoryOnly() {
+        return directoryOnly;
+    }
+
+    /**
+     * Returns literals that have to be contained by every path matching the rule, in order of their occurrence.
+     * Regex rules have no literals.
+     *
+     * @return required literals
+     */
+    @NotNull
+    public String[] getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Returns unique identifier of the compiled rule.
+     *
+     * @return rule identifier
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns rule's source - trimmed glob or regex.
+     *
+     * @return source
+     */
+    @NotNull
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns rule's source.
+     *
+     * @return source
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Checks if the text contains literal at the given offset.
+     *
+     * @param text    text to check
+     * @param offset  offset in text
+     * @param literal literal to look for
+     * @return literal found
+     */
+    private static boolean regionMatches(@NotNull CharSequence text, int offset, @NotNull String literal) {
+        if (offset < 0 || offset + literal.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (text.charAt(offset + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Helper that builds program and merges literals. */
+    private static class ProgramBuilder {
+        /** Program instructions. */
+        private final List<Instruction> instructions = new ArrayList<Instruction>();
+
+        /** Pending literal. */
+        private final StringBuilder literal = new StringBuilder();
+
+        /**
+         * Appends character to the pending literal.
+         *
+         * @param ch character
+         */
+        void append(char ch) {
+            literal.append(ch);
+        }
+
+        /**
+         * Adds new instruction of the given type.
+         *
+         * @param type instruction type
+         */
+        void add(@NotNull Type type) {
+            add(new Instruction(type));
+        }
+
+        /**
+         * Adds new instruction. Pending literal is flushed before.
+         *
+         * @param instruction instruction
+         */
+        void add(@NotNull Instruction instruction) {
+            flush();
+            final Type previous = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1).type;
+            if ((instruction.type == Type.STAR && (previous == Type.STAR || previous == Type.ANY)) ||
+                    (instruction.type == Type.DIRS && previous == Type.DIRS)) {
+                return;
+            }
+            instructions.add(instruction);
+        }
+
+        /**
+         * Returns last character that would be produced by the regex representation of the program: <code>^</code> if
+         * program is empty, last literal character or <code>*</code> for other instructions.
+         *
+         * @return last character
+         */
+        char lastChar() {
+            if (literal.length() > 0) {
+                return literal.charAt(literal.length() - 1);
+            }
+            return instructions.isEmpty() ? '^' : '*';
+        }
+
+        /**
+         * Builds program.
+         *
+         * @return instructions
+         */
+        @NotNull
+        Instruction[] build() {
+            flush();
+            return instructions.toArray(new Instruction[instructions.size()]);
+        }
+
+        /** Flushes pending literal to the instructions list. */
+        private void flush() {
+            if (literal.length() > 0) {
+                final Instruction instruction = new Instruction(Type.LITERAL);
+                instruction.literal = literal.toString();
+                instructions.add(instruction);
+                literal.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Single program instruction. Every instruction transforms the set of reachable offsets in the path into the set of
+     * offsets reachable after the instruction is applied.
+     */
+    private static class Instruction {
+        /** Instruction type. */
+        @NotNull
+        private final Type type;
+
+        /** Literal for {@link Type#LITERAL}. */
+        @Nullable
+        private String literal;
+
+        /** Sorted ranges (pairs of start and end characters) for {@link Type#CLASS}. */
+        @Nullable
+        private char[] ranges;
+
+        /** Class is negated - <code>[^a-z]</code>. */
+        private boolean negated;
+
+        /**
+         * Constructor.
+         *
+         * @param type instruction type
+         */
+        Instruction(@NotNull Type type) {
+            this.type = type;
+        }
+
+        /**
+         * Creates {@link Type#CLASS} instruction from the brackets content. Returns <code>null</code> if content is
+         * not a simple list of characters and ranges.
+         *
+         * @param content brackets content
+         * @return class instruction or <code>null</code>
+         */
+        @Nullable
+        static Instruction createClass(@NotNull CharSequence content) {
+            final int length = content.length();
+            int start = 0;
+            boolean negated = false;
+            if (length > 0 && content.charAt(0) == '^') {
+                negated = true;
+                start = 1;
+            }
+            if (start >= length) {
+                return null;
+            }
+
+            final StringBuilder ranges = new StringBuilder();
+            for (int i = start; i < length; i++) {
+                final char ch = content.charAt(i);
+                if (ch == '\\' || ch == '[' || ch == '&') {
+                    return null;
+                }
+                if (i + 2 < length && content.charAt(i + 1) == '-') {
+                    final char end = content.charAt(i + 2);
+                    if (ch == '-' || end == '\\' || end == '[' || end == '&' || end < ch) {
+                        return null;
+                    }
+                    ranges.append(ch).append(end);
+                    i += 2;
+                } else if (ch == '-' && i != start && i != length - 1) {
+                    return null;
+                } else {
+                    ranges.append(ch).append(ch);
+                }
+            }
+
+            final Instruction instruction = new Instruction(Type.CLASS);
+            instruction.ranges = ranges.toString().toCharArray();
+            instruction.negated = negated;
+            return instruction;
+        }
+
+        /**
+         * Checks if character belongs to the {@link Type#CLASS}.
+         *
+         * @param ch character
+         * @return character belongs to the class
+         */
+        private boolean inClass(char ch) {
+            assert ranges != null;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ch >= ranges[i] && ch <= ranges[i + 1]) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+
+        /**
+         * Applies instruction on the given path. Paths never contain line terminators, so <code>.</code> is treated
+         * as any character.
+         *
+         * @param path    checked path
+         * @param current offsets reachable before the instruction
+         * @param next    offsets reachable after the instruction
+         * @return any offset is reachable
+         */
+        boolean apply(@NotNull CharSequence path, @NotNull boolean[] current, @NotNull boolean[] next) {
+            final int length = path.length();
+            boolean any = false;
+            boolean active = false;
+
+            switch (type) {
+
+                case LITERAL:
+                    assert literal != null;
+                    final int size = literal.length();
+                    Arrays.fill(next, 0, Math.min(size, length + 1), false);
+                    for (int i = size; i <= length; i++) {
+                        next[i] = current[i - size] && regionMatches(path, i - size, literal);
+                        any |= next[i];
+                    }
+                    break;
+
+                case ANY_CHAR:
+                case CLASS:
+                    next[0] = false;
+                    for (int i = 1; i <= length; i++) {
+                        next[i] = current[i - 1] && (type == Type.ANY_CHAR || inClass(path.charAt(i - 1)));
+                        any |= next[i];
+                    }
+                    break;
+
+                case STAR:
+                case ANY:
+                    for (int i = 0; i <= length; i++) {
+                        active |= current[i];
+                        next[i] = active;
+                        any |= active;
+                        if (i < length && type == Type.STAR && path.charAt(i) == '/') {
+                            active = false;
+                        }
+                    }
+                    break;
+
+                case STAR_PLUS:
+                case ANY_PLUS:
+                    for (int i = 0; i <= length; i++) {
+                        next[i] = active;
+                        any |= active;
+                        if (i < length) {
+                            active = (active || current[i]) && (type == Type.ANY_PLUS || path.charAt(i) != '/');
+                        }
+                    }
+                    break;
+
+                case DIRS:
+                    for (int i = 0; i <= length; i++) {
+                        next[i] = current[i] || (active && path.charAt(i - 1) == '/');
+                        any |= next[i];
+                        active |= current[i];
+                    }
+                    break;
+
+                case OPTIONAL_SLASH:
+                    for (int i = 0; i <= length; i++) {
+                        next[i] = current[i] || (i > 0 && current[i - 1] && path.charAt(i - 1) == '/');
+                        any |= next[i];
+                    }
+                    break;
+
+                case CHILDREN:
+                    for (int i = 0; i <= length; i++) {
+                        next[i] = current[i] || active;
+                        any |= next[i];
+                        if (i < length && current[i] && path.charAt(i) == '/') {
+                            active = true;
+                        }
+                    }
+                    break;
+
+            }
+
+            return any;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chain of the {@link GlobRuleSet}s of the ignore files applicable to the same directory, checked in the given order.
+ * Required literals of all of the sets are merged into a single {@link AhoCorasick} automaton, so the full path is
+ * scanned once for all of the nested ignore files. The last occurrence of each literal is recorded, so every set
+ * accepts only the literals placed in the part of the path relative to its own directory.
+ * Path is scanned lazily, only when any of the sets has to evaluate its complex rules. Rule sets cannot be modified
+ * after the chain is created.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class GlobRuleChain {
+    /** Per-thread state of the currently matched path. */
+    private static final ThreadLocal<Scan> SCANS = new ThreadLocal<Scan>() {
+        @Override
+        protected Scan initialValue() {
+            return new Scan();
+        }
+    };
+
+    /** Rule sets in the order of checking. */
+    @NotNull
+    private final GlobRuleSet[] ruleSets;
+
+    /** Paths of the directories the rules of each set are relative to. */
+    @NotNull
+    private final String[] directories;
+
+    /** Literal identifiers of each set mapped to the identifiers in {@link #automaton}. */
+    @NotNull
+    private final int[][] literalIds;
+
+    /** Automaton built for the literals of all sets or <code>null</code> if there are no literals. */
+    @Nullable
+    private final AhoCorasick automaton;
+
+    /**
+     * Builds chain for the given rule sets.
+     *
+     * @param ruleSets    rule sets in the order of checking
+     * @param directories paths of the directories the rules of each set are relative to
+     */
+    public GlobRuleChain(@NotNull GlobRuleSet[] ruleSets, @NotNull String[] directories) {
+        this.ruleSets = ruleSets;
+        this.directories = directories;
+        this.literalIds = new int[ruleSets.length][];
+
+        final List<String> literals = new ArrayList<String>();
+        final TObjectIntHashMap<String> ids = new TObjectIntHashMap<String>();
+        for (int i = 0; i < ruleSets.length; i++) {
+            final String[] setLiterals = ruleSets[i].getLiterals();
+            literalIds[i] = new int[setLiterals.length];
+            for (int id = 0; id < setLiterals.length; id++) {
+                if (!ids.containsKey(setLiterals[id])) {
+                    ids.put(setLiterals[id], literals.size());
+                    literals.add(setLiterals[id]);
+                }
+                literalIds[i][id] = ids.get(setLiterals[id]);
+            }
+        }
+        this.automaton = literals.isEmpty() ? null : new AhoCorasick(literals.toArray(new String[literals.size()]));
+    }
+
+    /**
+     * Looks for the first set with a rule matching the path relative to the set's directory.
+     *
+     * @param fullPath full path created with {@link RelativePath#getFullPath(String, boolean)}
+     * @return <code>-1</code> if no rule matched, <code>0</code> if negated rule matched, <code>1</code> otherwise
+     */
+    public int match(@NotNull String fullPath) {
+        return match(fullPath, 0);
+    }
+
+    /**
+     * Looks for the first set with a rule matching the path relative to the set's directory. Results of the regex
+     * rules are memoized with the file identifier, so the relative paths are not copied.
+     *
+     * @param fullPath full path created with {@link RelativePath#getFullPath(String, boolean)}
+     * @param fileId   identifier of the checked file or <code>0</code> if it has no identifier
+     * @return <code>-1</code> if no rule matched, <code>0</code> if negated rule matched, <code>1</code> otherwise
+     * @see MatcherUtil#match(GlobMatcher, int, CharSequence)
+     */
+    public int match(@NotNull String fullPath, int fileId) {
+        final Scan scan = SCANS.get();
+        scan.start(fullPath, fileId);
+        try {
+            for (int i = 0; i < ruleSets.length; i++) {
+                final RelativePath relativePath = RelativePath.create(fullPath, directories[i]);
+                if (relativePath == null) {
+                    continue;
+                }
+
+                final int offset = fullPath.length() - relativePath.length();
+                final int index = ruleSets[i].match(relativePath, this, i, offset);
+                if (index > -1) {
+                    return ruleSets[i].isNegated(index) ? 0 : 1;
+                }
+            }
+            return -1;
+        } finally {
+            scan.path = null;
+        }
+    }
+
+    /**
+     * Finds the last rule of the first set that matches given path, used by {@link GlobRuleSet#match(CharSequence)}.
+     *
+     * @param path relative path
+     * @return index of the matched rule or <code>-1</code>
+     */
+    int match(@NotNull CharSequence path) {
+        final Scan scan = SCANS.get();
+        scan.start(path, 0);
+        try {
+            return ruleSets[0].match(path, this, 0, 0);
+        } finally {
+            scan.path = null;
+        }
+    }
+
+    /**
+     * Returns exclusive ends of the last occurrences of the literals in the currently matched path, indexed with
+     * the identifiers mapped by {@link #getLiteralIds(int)}. Path is scanned on the first call.
+     *
+     * @return ends of the literals, <code>0</code> if literal was not found
+     */
+    @NotNull
+    int[] getEnds() {
+        final Scan scan = SCANS.get();
+        if (!scan.scanned) {
+            final int size = automaton == null ? 0 : automaton.size();
+            if (scan.ends.length < size) {
+                scan.ends = new int[Math.max(size, scan.ends.length * 2)];
+            } else {
+                Arrays.fill(scan.ends, 0, size, 0);
+            }
+            if (automaton != null && scan.path != null) {
+                automaton.findLast(scan.path, scan.ends);
+            }
+            scan.scanned = true;
+        }
+        return scan.ends;
+    }
+
+    /**
+     * Returns identifier of the currently matched file.
+     *
+     * @return file identifier or <code>0</code>
+     */
+    int getFileId() {
+        return SCANS.get().fileId;
+    }
+
+    /**
+     * Returns literal identifiers of the set mapped to the identifiers used by {@link #getEnds()}.
+     *
+     * @param set position of the set in the chain
+     * @return mapped identifiers
+     */
+    @NotNull
+    int[] getLiteralIds(int set) {
+        return literalIds[set];
+    }
+
+    /** State of the path matched by the single thread. */
+    private static class Scan {
+        /** Currently matched path. */
+        @Nullable
+        private CharSequence path;
+
+        /** Identifier of the currently matched file or <code>0</code>. */
+        private int fileId;
+
+        /** Path was already scanned. */
+        private boolean scanned;
+
+        /** Ends of the last occurrences of the literals. */
+        @NotNull
+        private int[] ends = new int[64];
+
+        /**
+         * Starts matching of the new path.
+         *
+         * @param path   matched path
+         * @param fileId identifier of the matched file or <code>0</code>
+         */
+        void start(@NotNull CharSequence path, int fileId) {
+            this.path = path;
+            this.fileId = fileId;
+            this.scanned = false;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled set of the rules of a single ignore file that looks for the last rule matching given path.
+ * Classified rules ({@link GlobMatcher.Kind}) are resolved with hash lookups on the path, file name and its extensions.
+ * Lookups hash the ranges of the path in place, so neither {@link RelativePath} views nor their file names and
+ * extensions are copied.
+ * {@link GlobMatcher.Kind#COMPLEX} rules are prefiltered with their required literals - all of them are looked up in
+ * a single scan of the path with {@link AhoCorasick} automaton of the {@link GlobRuleChain}, so only the candidates
+ * that may match are evaluated. Sets of the nested ignore files are matched within the single chain, that scans the
+ * path once for all of them.
+ * Rules are collected in growable lists and frozen to the arrays used for matching once, on the first match.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class GlobRuleSet {
+    /** Per-thread buffers of the found literals, so the literals prefilter does not allocate memory. */
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    /** Rules added to the set. */
+    @NotNull
+    private final List<GlobMatcher> matchers = new ArrayList<GlobMatcher>();
+
+    /** Negation flags of the rules. */
+    @NotNull
+    private final BitSet negated = new BitSet();
+
+    /**
+     * Lookup tables of the classified rules. Each key is mapped to the indexes of the last rule that matches any file
+     * and the last rule that matches only directories.
+     */
+    @NotNull
+    private final Map<GlobMatcher.Kind, KeyTable> lookups =
+            new EnumMap<GlobMatcher.Kind, KeyTable>(GlobMatcher.Kind.class);
+
+    /** Indexes of the {@link GlobMatcher.Kind#COMPLEX} rules. */
+    @NotNull
+    private final TIntArrayList complex = new TIntArrayList();
+
+    /** Amount of the distinct literals required by each of the {@link #complex} rules. */
+    @NotNull
+    private final TIntArrayList required = new TIntArrayList();
+
+    /** Distinct required literals of the complex rules. */
+    @NotNull
+    private final List<String> literals = new ArrayList<String>();
+
+    /** Identifiers of the {@link #literals}. */
+    @NotNull
+    private final TObjectIntHashMap<String> literalIds = new TObjectIntHashMap<String>();
+
+    /** Literals mapped to the positions of the complex rules in {@link #complex} that require them. */
+    @NotNull
+    private final List<TIntArrayList> literalRules = new ArrayList<TIntArrayList>();
+
+    /** Arrays used for matching, created lazily on the first match and dropped when new rule is added. */
+    @Nullable
+    private volatile Frozen frozen;
+
+    /** Chain of the single set used by {@link #match(CharSequence)}, dropped when new rule is added. */
+    @Nullable
+    private volatile GlobRuleChain chain;
+
+    /**
+     * Adds new rule to the set.
+     *
+     * @param matcher   rule matcher
+     * @param isNegated rule is negated
+     */
+    public void add(@NotNull GlobMatcher matcher, boolean isNegated) {
+        final int index = matchers.size();
+        matchers.add(matcher);
+        negated.set(index, isNegated);
+        frozen = null;
+        chain = null;
+
+        final GlobMatcher.Kind kind = matcher.getKind();
+        if (kind == GlobMatcher.Kind.COMPLEX) {
+            final int position = complex.size();
+            complex.add(index);
+
+            int count = 0;
+            for (String literal : matcher.getLiterals()) {
+                if (literalIds.containsKey(literal)) {
+                    final TIntArrayList positions = literalRules.get(literalIds.get(literal));
+                    if (positions.get(positions.size() - 1) == position) {
+                        continue;
+                    }
+                    positions.add(position);
+                } else {
+                    literalIds.put(literal, literals.size());
+                    literals.add(literal);
+                    final TIntArrayList positions = new TIntArrayList();
+                    positions.add(position);
+                    literalRules.add(positions);
+                }
+                count++;
+            }
+            required.add(count);
+            return;
+        }
+
+        KeyTable lookup = lookups.get(kind);
+        if (lookup == null) {
+            lookup = new KeyTable();
+            lookups.put(kind, lookup);
+        }
+        lookup.put(matcher.getKey())[matcher.isDirectoryOnly() ? 1 : 0] = index;
+    }
+
+    /**
+     * Finds the last rule that matches given relative path - paths of directories have to end with slash.
+     * Classified and native rules are matched without allocating memory. Regex rules are memoized with
+     * {@link MatcherUtil}, which requires copying the path to {@link String} for each of the evaluated ones -
+     * {@link GlobRuleChain#match(String, int)} memoizes them with the file identifier instead.
+     *
+     * @param path relative path
+     * @return index of the matched rule or <code>-1</code>
+     */
+    public int match(@NotNull CharSequence path) {
+        GlobRuleChain chain = this.chain;
+        if (chain == null) {
+            chain = new GlobRuleChain(new GlobRuleSet[]{this}, new String[]{""});
+            this.chain = chain;
+        }
+        return chain.match(path);
+    }
+
+    /**
+     * Finds the last rule that matches given relative path with the required literals looked up by the chain.
+     *
+     * @param path   relative path
+     * @param chain  chain that contains the set
+     * @param set    position of the set in the chain
+     * @param offset offset of the relative path in the path scanned by the chain
+     * @return index of the matched rule or <code>-1</code>
+     */
+    int match(@NotNull CharSequence path, @NotNull GlobRuleChain chain, int set, int offset) {
+        final int length = path.length();
+        final boolean directory = length > 0 && path.charAt(length - 1) == '/';
+        final int end = directory ? length - 1 : length;
+        int nameStart = end;
+        while (nameStart > 0 && path.charAt(nameStart - 1) != '/') {
+            nameStart--;
+        }
+
+        int result = lookup(GlobMatcher.Kind.PATH, path, 0, end, directory, -1);
+        result = lookup(GlobMatcher.Kind.NAME, path, nameStart, end, directory, result);
+        if (lookups.containsKey(GlobMatcher.Kind.EXTENSION)) {
+            for (int i = nameStart; i < end; i++) {
+                if (path.charAt(i) == '.') {
+                    result = lookup(GlobMatcher.Kind.EXTENSION, path, i, end, directory, result);
+                }
+            }
+        }
+
+        final Frozen frozen = getFrozen();
+        final int[] complex = frozen.complex;
+        if (complex.length == 0 || complex[complex.length - 1] <= result) {
+            return result;
+        }
+
+        final int[] found = BUFFERS.get().found(complex.length);
+        final String[] literals = frozen.literals;
+        if (literals.length > 0) {
+            final int[] ends = chain.getEnds();
+            final int[] ids = chain.getLiteralIds(set);
+            final int[][] literalRules = frozen.literalRules;
+            for (int id = 0; id < literals.length; id++) {
+                if (ends[ids[id]] - literals[id].length() >= offset) {
+                    for (int position : literalRules[id]) {
+                        found[position]++;
+                    }
+                }
+            }
+        }
+
+        final int[] required = frozen.required;
+        int evaluated = 0;
+        for (int i = complex.length - 1; i >= 0 && complex[i] > result; i--) {
+            if (found[i] == required[i]) {
+                evaluated++;
+                if (matches(frozen.matchers[complex[i]], path, chain.getFileId())) {
+                    result = complex[i];
+                    break;
+                }
+            }
+        }
+
+        PerformanceStatistics.add(PerformanceStatistics.Counter.RULES_EVALUATED, evaluated);
+        return result;
+    }
+
+    /**
+     * Checks if rule with the given index is negated.
+     *
+     * @param index rule index
+     * @return rule is negated
+     */
+    public boolean isNegated(int index) {
+        return negated.get(index);
+    }
+
+    /**
+     * Returns amount of the rules in the set.
+     *
+     * @return rules count
+     */
+    public int size() {
+        return matchers.size();
+    }
+
+    /**
+     * Returns distinct required literals of the complex rules, indexed with their identifiers.
+     *
+     * @return literals
+     */
+    @NotNull
+    String[] getLiterals() {
+        return getFrozen().literals;
+    }
+
+    /**
+     * Looks for the last classified rule of the given kind that is mapped with the range of the path.
+     *
+     * @param kind      rule kind
+     * @param path      relative path
+     * @param start     start of the lookup key in the path
+     * @param end       end of the lookup key in the path
+     * @param directory checked path is a directory
+     * @param result    index of the last rule matched so far
+     * @return index of the last matched rule
+     */
+    private int lookup(@NotNull GlobMatcher.Kind kind, @NotNull CharSequence path, int start, int end,
+                       boolean directory, int result) {
+        final KeyTable lookup = lookups.get(kind);
+        final int[] indexes = lookup == null ? null : lookup.get(path, start, end);
+        if (indexes == null) {
+            return result;
+        }
+        result = Math.max(result, indexes[0]);
+        return directory ? Math.max(result, indexes[1]) : result;
+    }
+
+    /**
+     * Checks if path matches the rule. Native rules are cheaper to evaluate than to look up their results, so only
+     * regex rules are memoized - with the file identifier if it is known, or with the path copied to {@link String}.
+     *
+     * @param matcher rule matcher
+     * @param path    relative path
+     * @param fileId  identifier of the checked file or <code>0</code>
+     * @return path matches the rule
+     */
+    private static boolean matches(@NotNull GlobMatcher matcher, @NotNull CharSequence path, int fileId) {
+        if (matcher.isNative()) {
+            return matcher.matches(path);
+        }
+        return fileId > 0 ? MatcherUtil.match(matcher, fileId, path) : MatcherUtil.match(matcher, path.toString());
+    }
+
+    /**
+     * Returns arrays of the current rules used for matching.
+     *
+     * @return frozen rules
+     */
+    @NotNull
+    private Frozen getFrozen() {
+        Frozen result = frozen;
+        if (result == null) {
+            final int[][] rules = new int[literalRules.size()][];
+            for (int id = 0; id < rules.length; id++) {
+                rules[id] = literalRules.get(id).toNativeArray();
+            }
+            result = new Frozen(
+                    matchers.toArray(new GlobMatcher[matchers.size()]),
+                    complex.toNativeArray(),
+                    required.toNativeArray(),
+                    literals.toArray(new String[literals.size()]),
+                    rules
+            );
+            frozen = result;
+        }
+        return result;
+    }
+
+    /**
+     * Open addressing hash table of the lookup keys queried with a range of the path, so the key does not have to be
+     * extracted from the path. Each key is mapped to the indexes of the last rule that matches any file and the last
+     * rule that matches only directories.
+     */
+    private static class KeyTable {
+        /** Keys of the table. */
+        @NotNull
+        private String[] keys = new String[16];
+
+        /** Rules indexes mapped with the {@link #keys}. */
+        @NotNull
+        private int[][] values = new int[16][];
+
+        /** Amount of the keys in the table. */
+        private int size;
+
+        /**
+         * Returns rules indexes mapped with the key, adding new ones if the key is not present yet.
+         *
+         * @param key lookup key
+         * @return rules indexes
+         */
+        @NotNull
+        int[] put(@NotNull String key) {
+            final int[] indexes = get(key, 0, key.length());
+            if (indexes != null) {
+                return indexes;
+            }
+
+            if ((size + 1) * 2 > keys.length) {
+                final String[] oldKeys = keys;
+                final int[][] oldValues = values;
+                keys = new String[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2][];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        insert(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+
+            final int[] result = new int[]{-1, -1};
+            insert(key, result);
+            size++;
+            return result;
+        }
+
+        /**
+         * Returns rules indexes mapped with the key placed in the given range of the text.
+         *
+         * @param text  text containing the key
+         * @param start start of the key
+         * @param end   end of the key
+         * @return rules indexes or <code>null</code> if key is not present
+         */
+        @Nullable
+        int[] get(@NotNull CharSequence text, int start, int end) {
+            final int mask = keys.length - 1;
+            for (int slot = hash(text, start, end) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (equals(keys[slot], text, start, end)) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Inserts the key to the first free slot.
+         *
+         * @param key   lookup key
+         * @param value rules indexes
+         */
+        private void insert(@NotNull String key, @NotNull int[] value) {
+            final int mask = keys.length - 1;
+            int slot = hash(key, 0, key.length()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        /**
+         * Calculates hash of the given range of the text.
+         *
+         * @param text  text to hash
+         * @param start start of the range
+         * @param end   end of the range
+         * @return hash
+         */
+        private static int hash(@NotNull CharSequence text, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        /**
+         * Checks if the key is equal to the given range of the text.
+         *
+         * @param key   lookup key
+         * @param text  text to compare
+         * @param start start of the range
+         * @param end   end of the range
+         * @return key is equal to the range
+         */
+        private static boolean equals(@NotNull String key, @NotNull CharSequence text, int start, int end) {
+            if (key.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Arrays of the rules frozen for matching. */
+    private static class Frozen {
+        /** Rules of the set. */
+        @NotNull
+        final GlobMatcher[] matchers;
+
+        /** Indexes of the {@link GlobMatcher.Kind#COMPLEX} rules. */
+        @NotNull
+        final int[] complex;
+
+        /** Amount of the distinct literals required by each of the {@link #complex} rules. */
+        @NotNull
+        final int[] required;
+
+        /** Distinct required literals of the complex rules. */
+        @NotNull
+        final String[] literals;
+
+        /** Literals mapped to the positions of the complex rules that require them. */
+        @NotNull
+        final int[][] literalRules;
+
+        /**
+         * Constructor.
+         *
+         * @param matchers     rules of the set
+         * @param complex      indexes of the complex rules
+         * @param required     amount of the literals required by each of the complex rules
+         * @param literals     required literals
+         * @param literalRules literals mapped to the positions of the complex rules
+         */
+        Frozen(@NotNull GlobMatcher[] matchers, @NotNull int[] complex, @NotNull int[] required,
+               @NotNull String[] literals, @NotNull int[][] literalRules) {
+            this.matchers = matchers;
+            this.complex = complex;
+            this.required = required;
+            this.literals = literals;
+            this.literalRules = literalRules;
+        }
+    }
+
+    /** Reusable buffers of the single thread. */
+    private static class Buffers {
+        /** Amount of the found literals of each complex rule. */
+        @NotNull
+        private int[] found = new int[64];
+
+        /**
+         * Returns cleared {@link #found} buffer with at least the given size.
+         *
+         * @param size required size
+         * @return buffer
+         */
+        @NotNull
+        int[] found(int size) {
+            if (found.length < size) {
+                found = new int[Math.max(size, found.length * 2)];
+            } else {
+                Arrays.fill(found, 0, size, 0);
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the files statuses stored with two bits per {@link VirtualFileWithId#getId()} in paged arrays,
+ * so checking the status is a single bit probe. Pages are never modified once published - changes are collected with
+ * {@link Update} and published at once with the copies of the touched pages swapped with a single volatile write.
+ * <p>
+ * Invalidated files and directories are kept as pending roots until the statuses of their subtrees are published
+ * again. Only the statuses placed under the pending roots are not served, so invalidating a single directory does
+ * not affect the rest of the snapshot. Neither invalidating nor checking the status needs the file path.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public final class IgnoredFilesSnapshot {
+    /** Bits of the id used for the position in the page. */
+    private static final int PAGE_BITS = 16;
+
+    /** Mask of the position in the page. */
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    /** Amount of the words in the page - each word holds statuses of 32 files. */
+    private static final int PAGE_WORDS = 1 << (PAGE_BITS - 5);
+
+    /** Bit set if file is covered by the snapshot. */
+    private static final int KNOWN = 1;
+
+    /** Bit set if file is ignored. */
+    private static final int IGNORED = 2;
+
+    /** Mask of the {@link #KNOWN} bits of all files stored in a single word. */
+    private static final long KNOWN_WORD_MASK = 0x5555555555555555L;
+
+    /** Empty state. */
+    @NotNull
+    private static final State EMPTY = new State(new long[0][], Collections.<VirtualFile, Long>emptyMap());
+
+    /** Currently published state. */
+    @NotNull
+    private volatile State state = EMPTY;
+
+    /** Generation of the last invalidation. Guarded by the snapshot instance. */
+    private long generation;
+
+    /**
+     * Returns status of the file stored in the snapshot.
+     *
+     * @param file file to check
+     * @return status or <code>null</code> if file is not covered by the snapshot or is placed in the pending root
+     */
+    @Nullable
+    public Boolean get(@NotNull VirtualFile file) {
+        if (!(file instanceof VirtualFileWithId)) {
+            return null;
+        }
+
+        final State state = this.state;
+        final int bits = bits(state.pages, ((VirtualFileWithId) file).getId());
+        if ((bits & KNOWN) == 0) {
+            return null;
+        }
+        if (!state.pending.isEmpty()) {
+            for (VirtualFile current = file; current != null; current = current.getParent()) {
+                if (state.pending.containsKey(current)) {
+                    return null;
+                }
+            }
+        }
+        return (bits & IGNORED) != 0;
+    }
+
+    /**
+     * Marks file or directory as pending, so statuses of its subtree are not served until they are published with
+     * {@link Update} started after this call.
+     *
+     * @param file invalidated file or directory
+     */
+    public synchronized void invalidate(@NotNull VirtualFile file) {
+        final Map<VirtualFile, Long> pending = ContainerUtil.newHashMap(state.pending);
+        pending.put(file, ++generation);
+        state = new State(state.pages, pending);
+    }
+
+    /**
+     * Starts collecting statuses of the given root's subtree.
+     *
+     * @param root refreshed file or directory
+     * @return update to publish
+     */
+    @NotNull
+    public synchronized Update update(@NotNull VirtualFile root) {
+        return new Update(root, generation);
+    }
+
+    /**
+     * Removes status of the file. If file is a directory, statuses of all of its descendants covered by the snapshot
+     * are removed too.
+     *
+     * @param file file to remove
+     */
+    public synchronized void remove(@NotNull VirtualFile file) {
+        final State state = this.state;
+        if (!(file instanceof VirtualFileWithId) && !state.pending.containsKey(file)) {
+            return;
+        }
+
+        final Pages pages = new Pages(state.pages);
+        if (file instanceof VirtualFileWithId) {
+            pages.write(file, 0);
+        }
+
+        Map<VirtualFile, Long> pending = state.pending;
+        if (pending.containsKey(file)) {
+            pending = ContainerUtil.newHashMap(pending);
+            pending.remove(file);
+        }
+        this.state = new State(pages.pages, pending);
+    }
+
+    /** Removes all statuses and pending roots. */
+    public synchronized void clear() {
+        state = EMPTY;
+    }
+
+    /**
+     * Returns amount of the files covered by the snapshot.
+     *
+     * @return files count
+     */
+    public int size() {
+        int result = 0;
+        for (long[] page : state.pages) {
+            if (page != null) {
+                for (long word : page) {
+                    result += Long.bitCount(word & KNOWN_WORD_MASK);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads status bits of the file with the given id.
+     *
+     * @param pages pages of the statuses
+     * @param id    file id
+     * @return status bits
+     */
+    private static int bits(@NotNull long[][] pages, int id) {
+        final int page = id >>> PAGE_BITS;
+        if (id < 0 || page >= pages.length || pages[page] == null) {
+            return 0;
+        }
+
+        final int position = id & PAGE_MASK;
+        return (int) (pages[page][position >>> 5] >>> ((position & 31) << 1)) & (KNOWN | IGNORED);
+    }
+
+    /**
+     * Checks if directory is the file itself or one of its ancestors.
+     *
+     * @param directory directory
+     * @param file      file
+     * @return file is placed in the directory
+     */
+    private static boolean isAncestor(@NotNull VirtualFile directory, @NotNull VirtualFile file) {
+        for (VirtualFile current = file; current != null; current = current.getParent()) {
+            if (current.equals(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Statuses of the files collected in background and published with {@link #publish()}. */
+    public final class Update {
+        /** Refreshed file or directory. */
+        @NotNull
+        private final VirtualFile root;
+
+        /** Generation of the last invalidation made before the update was started. */
+        private final long generation;
+
+        /** Files which statuses were collected. */
+        @NotNull
+        private final List<VirtualFile> files = ContainerUtil.newArrayList();
+
+        /** Positions of the ignored files in {@link #files}. */
+        @NotNull
+        private final BitSet ignored = new BitSet();
+
+        /**
+         * Constructor.
+         *
+         * @param root       refreshed file or directory
+         * @param generation generation of the last invalidation
+         */
+        private Update(@NotNull VirtualFile root, long generation) {
+            this.root = root;
+            this.generation = generation;
+        }
+
+        /**
+         * Collects status of the file.
+         *
+         * @param file    file
+         * @param ignored file is ignored
+         */
+        public void set(@NotNull VirtualFile file, boolean ignored) {
+            if (file instanceof VirtualFileWithId) {
+                this.ignored.set(files.size(), ignored);
+                files.add(file);
+            }
+        }
+
+        /**
+         * Publishes collected statuses and removes the pending roots placed in the {@link #root} if they were
+         * invalidated before the update was started. Statuses of the descendants are resolved with the status of
+         * the ignored directory, so if directory becomes ignored, statuses stored for its descendants are removed.
+         * Files deleted in the meantime are skipped, so their ids reused by the new files do not inherit statuses.
+         */
+        public void publish() {
+            synchronized (IgnoredFilesSnapshot.this) {
+                final State state = IgnoredFilesSnapshot.this.state;
+                final Pages pages = new Pages(state.pages);
+                for (int i = 0; i < files.size(); i++) {
+                    final VirtualFile file = files.get(i);
+                    if (file.isValid()) {
+                        pages.set(file, ignored.get(i));
+                    }
+                }
+
+                final Map<VirtualFile, Long> pending = ContainerUtil.newHashMap();
+                for (Map.Entry<VirtualFile, Long> entry : state.pending.entrySet()) {
+                    if (entry.getValue() > generation || !isAncestor(root, entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                IgnoredFilesSnapshot.this.state = new State(pages.pages, pending);
+            }
+        }
+    }
+
+    /** Copy of the published pages - every touched page is copied once before it is modified. */
+    private static final class Pages {
+        /** Pages of the statuses. */
+        @NotNull
+        long[][] pages;
+
+        /** Pages that were already copied. */
+        @NotNull
+        private final BitSet copied = new BitSet();
+
+        /**
+         * Constructor.
+         *
+         * @param pages published pages
+         */
+        Pages(@NotNull long[][] pages) {
+            this.pages = pages.clone();
+        }
+
+        /**
+         * Stores status of the file. If known and not ignored directory becomes ignored, statuses of its descendants
+         * are removed.
+         *
+         * @param file    file
+         * @param ignored file is ignored
+         */
+        void set(@NotNull VirtualFile file, boolean ignored) {
+            final int bits = write(file, KNOWN | (ignored ? IGNORED : 0));
+            if (ignored && bits == KNOWN && file.isDirectory()) {
+                removeDescendants(file);
+            }
+        }
+
+        /**
+         * Writes status bits of the file. If known and not ignored directory is removed, statuses of its descendants
+         * are removed too.
+         *
+         * @param file file
+         * @param bits status bits
+         * @return previous status bits
+         */
+        int write(@NotNull VirtualFile file, int bits) {
+            final int id = ((VirtualFileWithId) file).getId();
+            if (id < 0) {
+                return 0;
+            }
+
+            final int previous = bits(pages, id);
+            if (previous == bits) {
+                return previous;
+            }
+
+            final int index = id >>> PAGE_BITS;
+            if (index >= pages.length) {
+                final long[][] result = new long[Math.max(index + 1, pages.length * 2)][];
+                System.arraycopy(pages, 0, result, 0, pages.length);
+                pages = result;
+            }
+            if (!copied.get(index)) {
+                pages[index] = pages[index] == null ? new long[PAGE_WORDS] : pages[index].clone();
+                copied.set(index);
+            }
+
+            final long[] page = pages[index];
+            final int position = id & PAGE_MASK;
+            final int shift = (position & 31) << 1;
+            final int word = position >>> 5;
+            page[word] = (page[word] & ~((long) (KNOWN | IGNORED) << shift)) | ((long) bits << shift);
+
+            if (bits == 0 && previous == KNOWN && file.isDirectory()) {
+                removeDescendants(file);
+            }
+            return previous;
+        }
+
+        /**
+         * Removes statuses of all descendants of the directory covered by the snapshot. Statuses are stored only for
+         * the children of the known and not ignored directories, so only such directories are visited - their
+         * children were already loaded when the statuses were computed.
+         *
+         * @param directory directory
+         */
+        private void removeDescendants(@NotNull VirtualFile directory) {
+            if (!directory.isValid()) {
+                return;
+            }
+
+            for (VirtualFile child : directory.getChildren()) {
+                if (!(child instanceof VirtualFileWithId)) {
+                    continue;
+                }
+                if ((bits(pages, ((VirtualFileWithId) child).getId()) & KNOWN) != 0) {
+                    write(child, 0);
+                }
+            }
+        }
+    }
+
+    /** Published pages of the statuses together with the pending roots. */
+    private static final class State {
+        /** Pages of the statuses - <code>null</code> pages do not cover any file. */
+        @NotNull
+        final long[][] pages;
+
+        /** Invalidated files and directories mapped to the generation of their last invalidation. */
+        @NotNull
+        final Map<VirtualFile, Long> pending;
+
+        /**
+         * Constructor.
+         *
+         * @param pages   pages of the statuses
+         * @param pending pending roots
+         */
+        State(@NotNull long[][] pages, @NotNull Map<VirtualFile, Long> pending) {
+            this.pages = pages;
+            this.pending = pending;
+        }
+    }
+}
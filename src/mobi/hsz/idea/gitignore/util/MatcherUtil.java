@@ -25,11 +25,9 @@
 package mobi.hsz.idea.gitignore.util;
 
 import com.intellij.util.containers.ContainerUtil;
-import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,8 +39,16 @@ import java.util.regex.Pattern;
  * @since 1.3.1
  */
 public class MatcherUtil {
+    /** Max amount of the cached matching results. */
+    private static final int CACHE_CAPACITY = 65536;
+
     /** Stores calculated matching results. */
-    private static HashMap<Integer, Boolean> cache;
+    private static final ConcurrentLruCache<MatchKey, Boolean> CACHE =
+            new ConcurrentLruCache<MatchKey, Boolean>(CACHE_CAPACITY);
+
+    /** Alphanumeric parts extracted from the patterns. */
+    private static final ConcurrentLruCache<String, String[]> PARTS_CACHE =
+            new ConcurrentLruCache<String, String[]>(4096);
 
     /** Private constructor to prevent creating {@link Icons} instance. */
     private MatcherUtil() {
@@ -51,6 +57,8 @@ public class MatcherUtil {
     /**
      * Extracts alphanumeric parts from the regex pattern and checks if any of them is contained in the tested path.
      * Looking for the parts speed ups the matching and prevents from running whole regex on the string.
+     * Parts of each pattern are extracted only once and cached. {@link Matcher} is stateful, so it cannot be shared
+     * between threads - {@link GlobMatcher} should be used for the concurrent matching.
      *
      * @param matcher to explode
      * @param path    to check
@@ -61,27 +69,110 @@ public class MatcherUtil {
             return false;
         }
 
-        if (cache == null) {
-            cache = ContainerUtil.newHashMap();
+        final MatchKey key = new MatchKey(matcher.pattern().pattern(), 0, path);
+        final Boolean cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
         }
 
-        int hashCode = new HashCodeBuilder().append(matcher.pattern()).append(path).toHashCode();
+        final String[] parts = getParts(matcher);
+        boolean result = false;
 
-        if (!cache.containsKey(hashCode)) {
-            final String[] parts = getParts(matcher);
-            boolean result = false;
+        if (parts.length == 0 || matchAllParts(parts, path)) {
+            PerformanceStatistics.increment(PerformanceStatistics.Counter.REGEX_EXECUTIONS);
+            result = matcher.reset(path).find();
+        }
 
-            if (parts.length == 0 || matchAllParts(parts, path)) {
-                try {
-                    result = matcher.reset(path).find();
-                } catch (StringIndexOutOfBoundsException ignored) {
-                }
-            }
+        return CACHE.put(key, result);
+    }
 
-            cache.put(hashCode, result);
+    /**
+     * Checks if given path matches the {@link GlobMatcher}. Native matchers do not require any parts lookup, so the
+     * rule is evaluated directly.
+     *
+     * @param matcher to check
+     * @param path    to check
+     * @return path matches the rule
+     */
+    public static boolean match(@Nullable GlobMatcher matcher, @Nullable String path) {
+        if (matcher == null || path == null) {
+            return false;
+        }
+
+        final MatchKey key = new MatchKey(matcher.getId(), 0, path);
+        final Boolean cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
         }
 
-        return cache.get(hashCode);
+        return CACHE.put(key, matcher.matches(path));
+    }
+
+    /**
+     * Checks if path of the file with given identifier matches the {@link GlobMatcher}. Result is cached with the rule
+     * and file identifiers, so the path is not copied to {@link String} for the lookup. Files keep their identifiers
+     * when they are moved or renamed and identifiers of the deleted files are reused, so {@link #clearCache()} has to
+     * be called on such changes.
+     *
+     * @param matcher to check
+     * @param fileId  identifier of the checked file
+     * @param path    to check
+     * @return path matches the rule
+     */
+    public static boolean match(@Nullable GlobMatcher matcher, int fileId, @NotNull CharSequence path) {
+        if (matcher == null) {
+            return false;
+        }
+
+        final MatchKey key = new MatchKey(matcher.getId(), fileId, null);
+        final Boolean cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return CACHE.put(key, matcher.matches(path));
+    }
+
+    /** Invalidates all of the cached matching results. Has to be called when the rules are changed. */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns ratio of the cache hits to all of the matching results lookups.
+     *
+     * @return hit rate between <code>0</code> and <code>1</code>
+     */
+    public static double getCacheHitRate() {
+        return CACHE.getHitRate();
+    }
+
+    /**
+     * Returns amount of the matching results found in cache.
+     *
+     * @return cache hits
+     */
+    public static long getCacheHits() {
+        return CACHE.getHits();
+    }
+
+    /**
+     * Returns amount of the matching results that were not found in cache.
+     *
+     * @return cache misses
+     */
+    public static long getCacheMisses() {
+        return CACHE.getMisses();
+    }
+
+    /**
+     * Returns statistics of the matching results cache.
+     *
+     * @return cache statistics
+     */
+    @NotNull
+    public static String getCacheStatistics() {
+        return CACHE.toString() + ", hitRate=" + CACHE.getHitRate();
     }
 
     /**
@@ -154,23 +245,87 @@ public class MatcherUtil {
             return new String[0];
         }
 
-        final List<String> parts = ContainerUtil.newArrayList();
         final String sPattern = pattern.toString();
+        final String[] cached = PARTS_CACHE.get(sPattern);
+        if (cached != null) {
+            return cached;
+        }
 
-        String part = "";
+        final List<String> parts = ContainerUtil.newArrayList();
+        final StringBuilder part = new StringBuilder();
         boolean inSquare = false;
         for (int i = 0; i < sPattern.length(); i++) {
             char ch = sPattern.charAt(i);
             if (!inSquare && Character.isLetterOrDigit(ch)) {
-                part += sPattern.charAt(i);
-            } else if (!part.isEmpty()) {
-                parts.add(part);
-                part = "";
+                part.append(ch);
+            } else if (part.length() > 0) {
+                parts.add(part.toString());
+                part.setLength(0);
             }
 
             inSquare = ch != ']' && ((ch == '[') || inSquare);
         }
 
-        return parts.toArray(new String[parts.size()]);
+        return PARTS_CACHE.put(sPattern, parts.toArray(new String[parts.size()]));
+    }
+
+    /**
+     * Key of the cached matching result - rule identifier or regex mapped with the checked file identifier or path.
+     * All values are compared, so different rules or paths with the same hash never share the result.
+     */
+    private static class MatchKey {
+        /** Rule identifier or regex. */
+        @NotNull
+        private final Object rule;
+
+        /** Identifier of the checked file or <code>0</code> if {@link #path} is used. */
+        private final int fileId;
+
+        /** Checked path or <code>null</code> if {@link #fileId} is used. */
+        @Nullable
+        private final String path;
+
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param rule   rule identifier or regex
+         * @param fileId identifier of the checked file or <code>0</code>
+         * @param path   checked path or <code>null</code>
+         */
+        MatchKey(@NotNull Object rule, int fileId, @Nullable String path) {
+            this.rule = rule;
+            this.fileId = fileId;
+            this.path = path;
+            this.hashCode = 31 * (31 * rule.hashCode() + fileId) + (path == null ? 0 : path.hashCode());
+        }
+
+        /**
+         * Checks if given object is equal to current {@link MatchKey} instance.
+         *
+         * @param obj to check
+         * @return objects are equal.
+         */
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof MatchKey)) {
+                return false;
+            }
+            final MatchKey key = (MatchKey) obj;
+            return hashCode == key.hashCode && fileId == key.fileId && rule.equals(key.rule) &&
+                    (path == null ? key.path == null : path.equals(key.path));
+        }
+
+        /**
+         * Returns precalculated hashCode.
+         *
+         * @return hashCode
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Application-wide counters and latency histograms of the plugin's hot paths. Values are updated with atomic
+ * operations only, so recording is cheap enough to stay enabled all the time. Collected data can be presented with
+ * {@link #getReport()} or dumped to the IDE log with {@link #dump()}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public class PerformanceStatistics {
+    /** Logger instance. */
+    private static final Logger LOG = Logger.getInstance(PerformanceStatistics.class);
+
+    /** Amount of the histogram buckets - each bucket covers twice the range of the previous one. */
+    private static final int BUCKETS = 24;
+
+    /** Counted events. */
+    public enum Counter {
+        /** {@code IgnoreManager.isFileIgnored} calls. */
+        IS_FILE_IGNORED_CALLS("isFileIgnored calls"),
+
+        /** Statuses read from the background snapshot. */
+        SNAPSHOT_HITS("Snapshot hits"),
+
+        /** Statuses read from the status cache. */
+        STATUS_CACHE_HITS("Status cache hits"),
+
+        /** Statuses computed with the rules. */
+        STATUS_CACHE_MISSES("Status cache misses"),
+
+        /** Rules evaluated with the full matching. */
+        RULES_EVALUATED("Rules evaluated"),
+
+        /** Executed regular expressions. */
+        REGEX_EXECUTIONS("Regex executions"),
+
+        /** {@code FileBasedIndex.getValues} fetches. */
+        INDEX_FETCHES("Index fetches"),
+
+        /** External processes runs. */
+        EXTERNAL_EXEC_RUNS("External process runs");
+
+        /** Counter label. */
+        @NotNull
+        private final String label;
+
+        /**
+         * Constructor.
+         *
+         * @param label counter label
+         */
+        Counter(@NotNull String label) {
+            this.label = label;
+        }
+    }
+
+    /** Measured operations. */
+    public enum Timer {
+        /** Computing status in {@code IgnoreManager.isFileIgnored}. */
+        IS_FILE_IGNORED("isFileIgnored"),
+
+        /** {@code FileBasedIndex.getValues} fetch. */
+        INDEX_FETCH("Index fetch"),
+
+        /** External process run. */
+        EXTERNAL_EXEC("External process run");
+
+        /** Timer label. */
+        @NotNull
+        private final String label;
+
+        /**
+         * Constructor.
+         *
+         * @param label timer label
+         */
+        Timer(@NotNull String label) {
+            this.label = label;
+        }
+    }
+
+    /** Values of the {@link Counter counters}. */
+    private static final AtomicLongArray COUNTERS = new AtomicLongArray(Counter.values().length);
+
+    /** Histograms of the {@link Timer timers} - buckets followed by the total time and the max time. */
+    private static final AtomicLongArray TIMERS = new AtomicLongArray(Timer.values().length * (BUCKETS + 2));
+
+    /** Private constructor to prevent creating {@link PerformanceStatistics} instance. */
+    private PerformanceStatistics() {
+    }
+
+    /**
+     * Increments the counter.
+     *
+     * @param counter counter to increment
+     */
+    public static void increment(@NotNull Counter counter) {
+        COUNTERS.incrementAndGet(counter.ordinal());
+    }
+
+    /**
+     * Adds value to the counter.
+     *
+     * @param counter counter to increase
+     * @param value   value to add
+     */
+    public static void add(@NotNull Counter counter, long value) {
+        if (value != 0) {
+            COUNTERS.addAndGet(counter.ordinal(), value);
+        }
+    }
+
+    /**
+     * Returns value of the counter.
+     *
+     * @param counter counter
+     * @return counter value
+     */
+    public static long get(@NotNull Counter counter) {
+        return COUNTERS.get(counter.ordinal());
+    }
+
+    /**
+     * Records duration of the operation started at the given time.
+     *
+     * @param timer operation timer
+     * @param start start time obtained with {@link System#nanoTime()}
+     */
+    public static void record(@NotNull Timer timer, long start) {
+        final long duration = Math.max(0, System.nanoTime() - start);
+        final int offset = timer.ordinal() * (BUCKETS + 2);
+        TIMERS.incrementAndGet(offset + bucket(duration));
+        TIMERS.addAndGet(offset + BUCKETS, duration);
+
+        long max;
+        do {
+            max = TIMERS.get(offset + BUCKETS + 1);
+        } while (duration > max && !TIMERS.compareAndSet(offset + BUCKETS + 1, max, duration));
+    }
+
+    /**
+     * Returns amount of the recorded operations.
+     *
+     * @param timer operation timer
+     * @return operations count
+     */
+    public static long count(@NotNull Timer timer) {
+        final int offset = timer.ordinal() * (BUCKETS + 2);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += TIMERS.get(offset + i);
+        }
+        return count;
+    }
+
+    /** Resets all of the counters and histograms. */
+    public static void reset() {
+        for (int i = 0; i < COUNTERS.length(); i++) {
+            COUNTERS.set(i, 0);
+        }
+        for (int i = 0; i < TIMERS.length(); i++) {
+            TIMERS.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns human readable report of the collected statistics.
+     *
+     * @return statistics report
+     */
+    @NotNull
+    public static String getReport() {
+        final StringBuilder builder = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            builder.append(counter.label).append(": ").append(get(counter)).append('\n');
+        }
+
+        final long calls = get(Counter.IS_FILE_IGNORED_CALLS);
+        if (calls > 0) {
+            builder.append("Rules evaluated per call: ")
+                    .append(String.format("%.2f", (double) get(Counter.RULES_EVALUATED) / calls)).append('\n');
+        }
+
+        for (Timer timer : Timer.values()) {
+            final int offset = timer.ordinal() * (BUCKETS + 2);
+            final long count = count(timer);
+            builder.append(timer.label).append(": count=").append(count);
+            if (count > 0) {
+                builder.append(", mean=").append(micros(TIMERS.get(offset + BUCKETS) / count))
+                        .append(", p50<").append(micros(percentile(offset, count, 0.5)))
+                        .append(", p90<").append(micros(percentile(offset, count, 0.9)))
+                        .append(", p99<").append(micros(percentile(offset, count, 0.99)))
+                        .append(", max=").append(micros(TIMERS.get(offset + BUCKETS + 1)));
+            }
+            builder.append('\n');
+        }
+
+        builder.append("Matching results cache: ").append(MatcherUtil.getCacheStatistics());
+        return builder.toString();
+    }
+
+    /** Writes {@link #getReport()} to the IDE log. */
+    public static void dump() {
+        LOG.info("Ignore plugin performance statistics:\n" + getReport());
+    }
+
+    /**
+     * Returns histogram bucket for the given duration.
+     *
+     * @param duration duration in nanoseconds
+     * @return bucket index
+     */
+    private static int bucket(long duration) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration >> 10));
+    }
+
+    /**
+     * Returns upper bound of the bucket containing the given percentile.
+     *
+     * @param offset     offset of the timer's histogram
+     * @param count      amount of the recorded operations
+     * @param percentile percentile between <code>0</code> and <code>1</code>
+     * @return upper bound in nanoseconds
+     */
+    private static long percentile(int offset, long count, double percentile) {
+        final long threshold = (long) Math.ceil(count * percentile);
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += TIMERS.get(offset + i);
+            if (sum >= threshold) {
+                return 1L << (10 + i);
+            }
+        }
+        return TIMERS.get(offset + BUCKETS + 1);
+    }
+
+    /**
+     * Formats duration in microseconds.
+     *
+     * @param duration duration in nanoseconds
+     * @return formatted duration
+     */
+    @NotNull
+    private static String micros(long duration) {
+        return String.format("%.1fus", duration / 1000.0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lightweight view of the path relative to the ignore file's directory. View shares characters of the full path
+ * computed once for the checked file, so addressing it from any directory or taking its segments does not copy
+ * the characters. Paths of directories end with slash.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 2.2
+ */
+public final class RelativePath implements CharSequence {
+    /** Full path shared by all views. */
+    @NotNull
+    private final String path;
+
+    /** Start offset of the view. */
+    private final int start;
+
+    /** End offset of the view. */
+    private final int end;
+
+    /** Cached hash code. */
+    private int hashCode;
+
+    /**
+     * Constructor.
+     *
+     * @param path  full path
+     * @param start start offset of the view
+     * @param end   end offset of the view
+     */
+    private RelativePath(@NotNull String path, int start, int end) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns full path of the file with trailing slash added for directories, that is used as a base for views.
+     *
+     * @param path      file's path
+     * @param directory file is a directory
+     * @return full path
+     */
+    @NotNull
+    public static String getFullPath(@NotNull String path, boolean directory) {
+        if (path.endsWith("/")) {
+            return directory ? path : path.substring(0, path.length() - 1);
+        }
+        return directory ? path + "/" : path;
+    }
+
+    /**
+     * Creates view of the full path relative to the given directory. If path is not placed in the directory, whole
+     * path is used. Leading slash is skipped.
+     *
+     * @param fullPath  full path created with {@link #getFullPath(String, boolean)}
+     * @param directory path of the directory
+     * @return relative view or <code>null</code> if it is empty
+     */
+    @Nullable
+    public static RelativePath create(@NotNull String fullPath, @NotNull String directory) {
+        int start = fullPath.startsWith(directory) ? directory.length() : 0;
+        if (start < fullPath.length() && fullPath.charAt(start) == '/') {
+            start++;
+        }
+
+        final int length = fullPath.length() - start;
+        if (length == 0 || (length == 1 && fullPath.charAt(start) == '/')) {
+            return null;
+        }
+        return new RelativePath(fullPath, start, fullPath.length());
+    }
+
+    /**
+     * Returns length of the view.
+     *
+     * @return length
+     */
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Returns character at the given index of the view.
+     *
+     * @param index index
+     * @return character
+     */
+    @Override
+    public char charAt(int index) {
+        return path.charAt(start + index);
+    }
+
+    /**
+     * Returns view of the given range that shares characters with the current one.
+     *
+     * @param start start index, inclusive
+     * @param end   end index, exclusive
+     * @return sub view
+     */
+    @NotNull
+    @Override
+    public RelativePath subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length());
+        }
+        return new RelativePath(path, this.start + start, this.start + end);
+    }
+
+    /**
+     * Checks if given object is a {@link RelativePath} with the same characters.
+     *
+     * @param obj to check
+     * @return objects are equal.
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (!(obj instanceof RelativePath)) {
+            return false;
+        }
+        final RelativePath view = (RelativePath) obj;
+        return length() == view.length() && path.regionMatches(start, view.path, view.start, length());
+    }
+
+    /**
+     * Returns hash code calculated the same way as {@link String#hashCode()}.
+     *
+     * @return hashCode
+     */
+    @Override
+    public int hashCode() {
+        int result = hashCode;
+        if (result == 0) {
+            for (int i = start; i < end; i++) {
+                result = 31 * result + path.charAt(i);
+            }
+            hashCode = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns characters of the view as a new {@link String}.
+     *
+     * @return path
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return path.substring(start, end);
+    }
+}
@@ -35,6 +35,7 @@ import com.intellij.util.containers.ContainerUtil;
 import git4idea.config.GitVcsApplicationSettings;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.lang.kind.GitLanguage;
+import mobi.hsz.idea.gitignore.util.PerformanceStatistics;
 import mobi.hsz.idea.gitignore.util.Utils;
 import mobi.hsz.idea.gitignore.util.exec.parser.ExecutionOutputParser;
 import mobi.hsz.idea.gitignore.util.exec.parser.GitExcludesOutputParser;
@@ -214,6 +215,8 @@ public class ExternalExec {
             return null;
         }
 
+        final long start = System.nanoTime();
+        PerformanceStatistics.increment(PerformanceStatistics.Counter.EXTERNAL_EXEC_RUNS);
         try {
             final String cmd = bin + " " + command;
             final File workingDirectory = directory != null ? new File(directory.getPath()) : null;
@@ -246,6 +249,8 @@ public class ExternalExec {
                 return parser.getOutput();
             }
         } catch (IOException ignored) {
+        } finally {
+            PerformanceStatistics.record(PerformanceStatistics.Timer.EXTERNAL_EXEC, start);
         }
 
         return null;
@@ -67,8 +67,7 @@ public class IgnoreFileStatusProvider implements FileStatusProvider, DumbAware {
     @Nullable
     @Override
     public FileStatus getFileStatus(@NotNull VirtualFile virtualFile) {
-        return ignoreManager.isFileIgnored(virtualFile) &&
-                !ignoreManager.isFileTracked(virtualFile) ? IGNORED : null;
+        return ignoreManager.reportStatus(virtualFile) ? IGNORED : null;
     }
 
     /** Does nothing. */
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
+import mobi.hsz.idea.gitignore.file.type.kind.MercurialFileType;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class IgnoreFilesIndexTest extends Common<IgnoreFilesIndex> {
+
+    @Test
+    public void testMoveToOtherDirectory() throws IOException {
+        final VirtualFile file = myFixture.addFileToProject("dir/.gitignore", "foo").getVirtualFile();
+        final VirtualFile dir = file.getParent();
+        final VirtualFile other = myFixture.getTempDirFixture().findOrCreateDir("other");
+
+        assertEquals(1, IgnoreFilesIndex.getEntries(getProject(), GitFileType.INSTANCE, dir).size());
+        assertTrue(IgnoreFilesIndex.hasEntries(getProject(), GitFileType.INSTANCE));
+        assertContainsElements(IgnoreFilesIndex.getFiles(getProject(), GitFileType.INSTANCE), file);
+
+        new WriteCommandAction(getProject()) {
+            @Override
+            protected void run(@NotNull Result result) throws IOException {
+                file.move(this, other);
+            }
+        }.execute();
+
+        assertEmpty(IgnoreFilesIndex.getEntries(getProject(), GitFileType.INSTANCE, dir));
+        assertEquals(1, IgnoreFilesIndex.getEntries(getProject(), GitFileType.INSTANCE, other).size());
+        assertNotNull(IgnoreFilesIndex.getEntry(getProject(), GitFileType.INSTANCE, file));
+        assertContainsElements(IgnoreFilesIndex.getFiles(getProject(), GitFileType.INSTANCE), file);
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        final VirtualFile file = myFixture.addFileToProject("dir/.gitignore", "foo").getVirtualFile();
+        final VirtualFile dir = file.getParent();
+        assertEquals(1, IgnoreFilesIndex.getEntries(getProject(), GitFileType.INSTANCE, dir).size());
+
+        new WriteCommandAction(getProject()) {
+            @Override
+            protected void run(@NotNull Result result) throws IOException {
+                file.rename(this, ".hgignore");
+            }
+        }.execute();
+
+        assertEmpty(IgnoreFilesIndex.getEntries(getProject(), GitFileType.INSTANCE, dir));
+        assertEquals(1, IgnoreFilesIndex.getEntries(getProject(), MercurialFileType.INSTANCE, dir).size());
+        assertFalse(IgnoreFilesIndex.getFiles(getProject(), GitFileType.INSTANCE).contains(file));
+        assertContainsElements(IgnoreFilesIndex.getFiles(getProject(), MercurialFileType.INSTANCE), file);
+    }
+}
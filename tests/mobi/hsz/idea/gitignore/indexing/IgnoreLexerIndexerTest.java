@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Function;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
+import mobi.hsz.idea.gitignore.file.type.kind.MercurialFileType;
+import mobi.hsz.idea.gitignore.psi.IgnoreFile;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+public class IgnoreLexerIndexerTest extends Common<IgnoreLexerIndexer> {
+    private static final Function<Pair<String, IgnoreBundle.Syntax>, String> RULE_SOURCE =
+            new Function<Pair<String, IgnoreBundle.Syntax>, String>() {
+                @Override
+                public String fun(Pair<String, IgnoreBundle.Syntax> rule) {
+                    return rule.first;
+                }
+            };
+
+    @Test
+    public void testPrivateConstructor() throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+        privateConstructor(IgnoreLexerIndexer.class);
+    }
+
+    @Test
+    public void testSameAsPsi() {
+        assertSameAsPsi(GitFileType.INSTANCE, createIgnoreContent(
+                "### Header", "## Section", "# comment", "", "foo.txt", "!bar.txt", "  /dir/", "dir/sub/*.log",
+                "a[bc]d", "[ab/]x", "!/out/**", "a//b", "trailing  ", "file#hash"
+        ));
+        assertSameAsPsi(MercurialFileType.INSTANCE, createIgnoreContent(
+                "syntax: glob", "*.orig", "syntax:", "", "# comment", "regexp", "^build/.*$", "syntax: unknown",
+                "[a-z]+\\.tmp", "syntax: glob", "!dist/"
+        ));
+    }
+
+    @Test
+    public void testGrammarErrors() {
+        assertNull(IgnoreLexerIndexer.map(getFixtureFile(GitFileType.INSTANCE, "foo"), GitFileType.INSTANCE, "[abc"));
+        assertNull(IgnoreLexerIndexer.map(getFixtureFile(GitFileType.INSTANCE, "foo"), GitFileType.INSTANCE, "abc]"));
+        assertNull(IgnoreLexerIndexer.map(getFixtureFile(GitFileType.INSTANCE, "foo"), GitFileType.INSTANCE, "!"));
+        assertNull(IgnoreLexerIndexer.map(getFixtureFile(GitFileType.INSTANCE, "foo"), GitFileType.INSTANCE, "/"));
+    }
+
+    @Test
+    public void testContentHash() {
+        final VirtualFile file = getFixtureFile(GitFileType.INSTANCE, "foo");
+        final IgnoreEntryOccurrence entry = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("foo.txt", "!bar/"));
+        final IgnoreEntryOccurrence formatted = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("# comment", "foo.txt  ", "", "!bar/"));
+        final IgnoreEntryOccurrence modified = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("foo.txt", "bar/"));
+
+        assertNotNull(entry);
+        assertNotNull(formatted);
+        assertNotNull(modified);
+        assertEquals(entry.getContentHash(), formatted.getContentHash());
+        assertEquals(entry, formatted);
+        assertFalse(entry.getContentHash() == modified.getContentHash());
+        assertFalse(entry.equals(modified));
+    }
+
+    @Test
+    public void testChangedRules() {
+        final VirtualFile file = getFixtureFile(GitFileType.INSTANCE, "foo");
+        final IgnoreEntryOccurrence entry = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("*.log", "/build/", "!keep.txt"));
+        final IgnoreEntryOccurrence modified = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("*.log", "/out/", "!keep.txt"));
+        final IgnoreEntryOccurrence reordered = IgnoreLexerIndexer.map(file, GitFileType.INSTANCE,
+                createIgnoreContent("!keep.txt", "*.log", "/build/"));
+
+        assertNotNull(entry);
+        assertNotNull(modified);
+        assertNotNull(reordered);
+        assertTrue(IgnoreEntryOccurrence.getChangedRules(entry, entry).isEmpty());
+        assertEquals(
+                ContainerUtil.newArrayList("/build/", "/out/"),
+                ContainerUtil.map(IgnoreEntryOccurrence.getChangedRules(entry, modified), RULE_SOURCE)
+        );
+        assertEquals(6, IgnoreEntryOccurrence.getChangedRules(entry, reordered).size());
+        assertEquals(3, IgnoreEntryOccurrence.getChangedRules(null, entry).size());
+    }
+
+    private void assertSameAsPsi(IgnoreFileType fileType, String content) {
+        myFixture.configureByText(fileType, content);
+        final IgnoreEntryOccurrence expected = IgnoreFilesIndex.mapPsi(
+                myFixture.getFile().getVirtualFile(), (IgnoreFile) myFixture.getFile()
+        );
+        final IgnoreEntryOccurrence actual = IgnoreLexerIndexer.map(
+                myFixture.getFile().getVirtualFile(), fileType, content
+        );
+
+        assertNotNull(actual);
+        assertFalse(actual.getItems().isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private VirtualFile getFixtureFile(IgnoreFileType fileType, String content) {
+        myFixture.configureByText(fileType, content);
+        return myFixture.getFile().getVirtualFile();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class AhoCorasickTest extends Common<AhoCorasick> {
+
+    @Test
+    public void testFind() {
+        final AhoCorasick automaton = new AhoCorasick(new String[]{"he", "she", "his", "hers", "/build/"});
+        assertEquals(5, automaton.size());
+
+        boolean[] found = new boolean[automaton.size()];
+        assertEquals(3, automaton.find("ushers", found));
+        assertTrue(found[0]);
+        assertTrue(found[1]);
+        assertFalse(found[2]);
+        assertTrue(found[3]);
+        assertFalse(found[4]);
+
+        found = new boolean[automaton.size()];
+        assertEquals(1, automaton.find("src/build/out", found));
+        assertTrue(found[4]);
+
+        found = new boolean[automaton.size()];
+        assertEquals(0, automaton.find("foo/bar", found));
+    }
+
+    @Test
+    public void testFindLast() {
+        final AhoCorasick automaton = new AhoCorasick(new String[]{"foo", "bar", "baz"});
+
+        final int[] ends = new int[automaton.size()];
+        automaton.findLast("foo/bar/foo/x", ends);
+        assertEquals(11, ends[0]);
+        assertEquals(7, ends[1]);
+        assertEquals(0, ends[2]);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingSchedulerTest extends Common<CoalescingScheduler> {
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final CoalescingScheduler scheduler = new CoalescingScheduler(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 50);
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.request();
+        }
+        waitFor(scheduler);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testRequestWhileRunning() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CoalescingScheduler scheduler = new CoalescingScheduler(new Runnable() {
+            @Override
+            public void run() {
+                if (runs.incrementAndGet() == 1) {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        }, 10);
+
+        scheduler.request();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.request();
+        scheduler.request();
+        release.countDown();
+        waitFor(scheduler);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final CoalescingScheduler scheduler = new CoalescingScheduler(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 50);
+
+        scheduler.request();
+        scheduler.cancel();
+        assertFalse(scheduler.isPending());
+        scheduler.request();
+        waitFor(scheduler);
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+    }
+
+    private static void waitFor(CoalescingScheduler scheduler) throws InterruptedException {
+        for (int i = 0; i < 500 && scheduler.isPending(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(scheduler.isPending());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class DirectoryStatusCacheTest extends Common<DirectoryStatusCache> {
+
+    @Test
+    public void testStatuses() {
+        final VirtualFile file = myFixture.addFileToProject("dir/sub/file.txt", "").getVirtualFile();
+        final VirtualFile other = myFixture.addFileToProject("other/file.txt", "").getVirtualFile();
+        final VirtualFile sub = file.getParent();
+        final VirtualFile dir = sub.getParent();
+        final DirectoryStatusCache cache = new DirectoryStatusCache();
+
+        assertNull(cache.get(file));
+        assertFalse(cache.set(file, false, cache.getGeneration()));
+        assertEquals(Boolean.FALSE, cache.get(file));
+
+        cache.set(sub, true, cache.getGeneration());
+        assertEquals(Boolean.FALSE, cache.get(file));
+        cache.invalidateFile(file);
+        assertEquals(Boolean.TRUE, cache.get(file));
+
+        cache.set(dir, false, cache.getGeneration());
+        cache.set(file, true, cache.getGeneration());
+        cache.set(other, false, cache.getGeneration());
+        cache.invalidate(dir);
+        assertEquals(Boolean.FALSE, cache.get(dir));
+        assertNull(cache.get(sub));
+        assertNull(cache.get(file));
+        assertEquals(Boolean.FALSE, cache.get(other));
+
+        cache.set(file, true, cache.getGeneration());
+        cache.invalidate(dir.getParent());
+        assertNull(cache.get(file));
+        assertNull(cache.get(other));
+
+        cache.set(sub, true, cache.getGeneration());
+        cache.clear();
+        assertNull(cache.get(sub));
+        assertNull(cache.get(file));
+    }
+
+    @Test
+    public void testOutdatedGeneration() {
+        final VirtualFile file = myFixture.addFileToProject("dir/file.txt", "").getVirtualFile();
+        final VirtualFile dir = file.getParent();
+        final DirectoryStatusCache cache = new DirectoryStatusCache();
+
+        final long generation = cache.getGeneration();
+        cache.invalidate(dir);
+        assertTrue(cache.set(file, true, generation));
+        assertNull(cache.get(file));
+
+        cache.set(file, true, cache.getGeneration());
+        assertEquals(Boolean.TRUE, cache.get(file));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+public class GlobMatcherTest extends Common<GlobMatcher> {
+    private static final String[] GLOBS = new String[]{
+            "file.txt", "file*.txt", "fil[eE].txt", "dir/file.txt", "/file.txt", "fi**le.txt", "**/dir/file.txt",
+            "/dir/**/file.txt", "dir/*", "subdir", "subdir/", "*.log", "*", "**", "**/", "*/foo", "foo/**",
+            "node_modules/", "/build", "a?c", "[!a]b", "[^a-c]x", "\\*.txt", "\\#file", "foo\\", "*foo*", "a/**/b/",
+    };
+
+    private static final String[] PATHS = new String[]{
+            "", "/", "file.txt", "dir/file.txt", "dir/subdir/file.txt", "file1.txt", "otherfile.txt", "filE.txt",
+            "fild.txt", "xdir/dir/file.txt", "xdir/file.txt", "fi-foo-le.txt", "fi/le.txt", "fi/foo/le.txt",
+            "foo/dir/file.txt", "dir/subdir/foo/file.txt", "dir/", "dir/subdir/", "dir/foo/bar.txt", "a.log",
+            "logs/a.log", "a.log/", "node_modules/", "src/node_modules/", "node_modules", "build", "build/",
+            "src/build", "abc", "a/c", "!b", "bb", "dx", "*.txt", "#file", "foo", "xfooy", "a/b/", "a/x/y/b/",
+            "x/foo", "foo/bar", "foo/bar/baz",
+    };
+
+    @Test
+    public void testCompile() {
+        assertNotNull(GlobMatcher.compile("file.txt", false));
+        assertNotNull(GlobMatcher.compile("fil[eE].txt", false));
+        assertNull(GlobMatcher.compile("file{1,2}.txt", false));
+        assertNull(GlobMatcher.compile("fil[\\w].txt", false));
+        assertNull(GlobMatcher.compile("fil[e.txt", false));
+    }
+
+    @Test
+    public void testMatches() {
+        GlobMatcher matcher;
+
+        matcher = GlobMatcher.compile("file.txt", false);
+        assertNotNull(matcher);
+        assertTrue(matcher.matches("file.txt"));
+        assertTrue(matcher.matches("dir/subdir/file.txt"));
+        assertFalse(matcher.matches("otherfile.txt"));
+
+        matcher = GlobMatcher.compile("/dir/**/file.txt", false);
+        assertNotNull(matcher);
+        assertTrue(matcher.matches("dir/file.txt"));
+        assertTrue(matcher.matches("dir/subdir/foo/file.txt"));
+        assertFalse(matcher.matches("foo/dir/file.txt"));
+
+        matcher = GlobMatcher.compile("*.log", false);
+        assertNotNull(matcher);
+        assertTrue(matcher.matches("a.log"));
+        assertTrue(matcher.matches("logs/a.log"));
+        assertFalse(matcher.matches("a.log.txt"));
+
+        matcher = GlobMatcher.compile("node_modules/", false);
+        assertNotNull(matcher);
+        assertTrue(matcher.matches("src/node_modules/"));
+        assertFalse(matcher.matches("node_modules"));
+    }
+
+    @Test
+    public void testKind() {
+        assertKind("*.log", GlobMatcher.Kind.EXTENSION, ".log", false);
+        assertKind("*.log/", GlobMatcher.Kind.EXTENSION, ".log", true);
+        assertKind("node_modules", GlobMatcher.Kind.NAME, "node_modules", false);
+        assertKind("build/", GlobMatcher.Kind.NAME, "build", true);
+        assertKind("/out", GlobMatcher.Kind.PATH, "out", false);
+        assertKind("dir/file.txt", GlobMatcher.Kind.PATH, "dir/file.txt", false);
+        assertKind("/dist/", GlobMatcher.Kind.PATH, "dist", true);
+        assertKind("*~", GlobMatcher.Kind.COMPLEX, null, false);
+        assertKind("foo*", GlobMatcher.Kind.COMPLEX, null, false);
+        assertKind("**/foo/bar", GlobMatcher.Kind.COMPLEX, null, false);
+    }
+
+    private void assertKind(String glob, GlobMatcher.Kind kind, String key, boolean directoryOnly) {
+        final GlobMatcher matcher = GlobMatcher.compile(glob, false);
+        assertNotNull(glob, matcher);
+        assertEquals(glob, kind, matcher.getKind());
+        assertEquals(glob, key, matcher.getKey());
+        assertEquals(glob, directoryOnly, matcher.isDirectoryOnly());
+    }
+
+    @Test
+    public void testRegexFallback() {
+        final GlobMatcher matcher = Glob.createMatcher("^foo[0-9]+$", IgnoreBundle.Syntax.REGEXP, false);
+        assertNotNull(matcher);
+        assertFalse(matcher.isNative());
+        assertTrue(matcher.matches("foo12"));
+        assertFalse(matcher.matches("foo"));
+
+        final GlobMatcher suffix = Glob.createMatcher("\\.orig$", IgnoreBundle.Syntax.REGEXP, false);
+        assertNotNull(suffix);
+        assertTrue(suffix.matches("src/foo.java.orig"));
+        assertFalse(suffix.matches("src/foo.orig.java"));
+
+        final GlobMatcher prefix = Glob.createMatcher("^build/", IgnoreBundle.Syntax.REGEXP, false);
+        assertNotNull(prefix);
+        assertTrue(prefix.matches("build/classes/Foo.class"));
+        assertFalse(prefix.matches("src/build/Foo.java"));
+    }
+
+    @Test
+    public void testCompatibilityWithRegex() {
+        for (String glob : GLOBS) {
+            for (boolean acceptChildren : new boolean[]{false, true}) {
+                Glob.clearCache();
+                final GlobMatcher matcher = GlobMatcher.compile(glob, acceptChildren);
+                final Pattern pattern = Pattern.compile(Glob.createRegex(glob, acceptChildren));
+                assertNotNull(glob, matcher);
+
+                for (String path : PATHS) {
+                    assertEquals(glob + " -> " + path, pattern.matcher(path).matches(), matcher.matches(path));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class GlobRuleChainTest extends Common<GlobRuleChain> {
+
+    @Test
+    public void testMatch() {
+        final GlobRuleSet inner = createRuleSet("*foo*.txt", "!keep*foo*.txt");
+        final GlobRuleSet outer = createRuleSet("*.log", "foo*/*bar*");
+        final GlobRuleChain chain = new GlobRuleChain(
+                new GlobRuleSet[]{inner, outer},
+                new String[]{"/project/foo", "/project"}
+        );
+
+        assertEquals(1, chain.match("/project/foo/afoob.txt"));
+        assertEquals(0, chain.match("/project/foo/keepfoo.txt"));
+        assertEquals(1, chain.match("/project/foo/a.log"));
+        assertEquals(1, chain.match("/project/foo/xbarx"));
+        assertEquals(-1, chain.match("/project/foo/a/b.txt"));
+        assertEquals(-1, chain.match("/project/other/xbarx"));
+        assertEquals(-1, chain.match("/project/foo/"));
+    }
+
+    @Test
+    public void testMatchSingleSet() {
+        final GlobRuleSet ruleSet = createRuleSet("*.log", "*foo*.txt", "!keep*foo*.txt");
+
+        assertEquals(0, ruleSet.match("a.log"));
+        assertEquals(1, ruleSet.match("dir/afoob.txt"));
+        assertEquals(2, ruleSet.match("keepfoo.txt"));
+        assertEquals(-1, ruleSet.match("foo/a.txt"));
+    }
+
+    private static GlobRuleSet createRuleSet(String... rules) {
+        final GlobRuleSet ruleSet = new GlobRuleSet();
+        for (String rule : rules) {
+            final boolean negated = rule.startsWith("!");
+            final GlobMatcher matcher = GlobMatcher.compile(negated ? rule.substring(1) : rule, false);
+            assertNotNull(matcher);
+            ruleSet.add(matcher, negated);
+        }
+        return ruleSet;
+    }
+}
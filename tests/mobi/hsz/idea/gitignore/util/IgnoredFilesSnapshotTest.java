@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class IgnoredFilesSnapshotTest extends Common<IgnoredFilesSnapshot> {
+
+    @Test
+    public void testSnapshot() {
+        final VirtualFile file = myFixture.addFileToProject("dir/sub/file.txt", "").getVirtualFile();
+        final VirtualFile other = myFixture.addFileToProject("other/file.txt", "").getVirtualFile();
+        final VirtualFile sub = file.getParent();
+        final VirtualFile dir = sub.getParent();
+        final IgnoredFilesSnapshot snapshot = new IgnoredFilesSnapshot();
+        assertNull(snapshot.get(file));
+
+        final IgnoredFilesSnapshot.Update update = snapshot.update(dir.getParent());
+        update.set(dir, false);
+        update.set(sub, false);
+        update.set(file, true);
+        update.set(other, false);
+        assertNull(snapshot.get(file));
+        update.publish();
+        assertEquals(4, snapshot.size());
+        assertEquals(Boolean.TRUE, snapshot.get(file));
+        assertEquals(Boolean.FALSE, snapshot.get(other));
+
+        final IgnoredFilesSnapshot.Update outdated = snapshot.update(dir);
+        snapshot.invalidate(sub);
+        assertNull(snapshot.get(file));
+        assertNull(snapshot.get(sub));
+        assertEquals(Boolean.FALSE, snapshot.get(dir));
+        assertEquals(Boolean.FALSE, snapshot.get(other));
+
+        outdated.publish();
+        assertNull(snapshot.get(file));
+        snapshot.update(dir).publish();
+        assertEquals(Boolean.TRUE, snapshot.get(file));
+
+        final IgnoredFilesSnapshot.Update ignored = snapshot.update(dir);
+        ignored.set(dir, true);
+        ignored.publish();
+        assertEquals(Boolean.TRUE, snapshot.get(dir));
+        assertNull(snapshot.get(sub));
+        assertNull(snapshot.get(file));
+        assertEquals(Boolean.FALSE, snapshot.get(other));
+
+        final IgnoredFilesSnapshot.Update restored = snapshot.update(dir);
+        restored.set(dir, false);
+        restored.set(sub, false);
+        restored.publish();
+        snapshot.remove(dir);
+        assertNull(snapshot.get(dir));
+        assertNull(snapshot.get(sub));
+        assertEquals(1, snapshot.size());
+
+        snapshot.clear();
+        assertNull(snapshot.get(other));
+        assertEquals(0, snapshot.size());
+    }
+}
@@ -43,14 +43,47 @@ public class MatcherUtilTest extends Common<MatcherUtil> {
         final Pattern pattern = Pattern.compile("foo");
         final Matcher matcher = pattern.matcher("");
 
-        assertFalse(MatcherUtil.match(null, null));
-        assertFalse(MatcherUtil.match(null, "foo"));
+        assertFalse(MatcherUtil.match((Matcher) null, null));
+        assertFalse(MatcherUtil.match((Matcher) null, "foo"));
         assertFalse(MatcherUtil.match(matcher, null));
         assertFalse(MatcherUtil.match(matcher, "fo"));
         assertTrue(MatcherUtil.match(matcher, "foo"));
         assertTrue(MatcherUtil.match(matcher, "xfooy"));
     }
 
+    @Test
+    public void testMatchGlobMatcher() {
+        final GlobMatcher foo = GlobMatcher.compile("foo", false);
+        final GlobMatcher bar = GlobMatcher.compile("bar", false);
+
+        assertFalse(MatcherUtil.match((GlobMatcher) null, "foo"));
+        assertFalse(MatcherUtil.match(foo, null));
+
+        MatcherUtil.clearCache();
+        assertTrue(MatcherUtil.match(foo, "dir/foo"));
+        assertFalse(MatcherUtil.match(bar, "dir/foo"));
+        assertTrue(MatcherUtil.match(foo, "dir/foo"));
+        assertFalse(MatcherUtil.match(bar, "dir/foo"));
+        assertEquals(0.5, MatcherUtil.getCacheHitRate(), 0.001);
+    }
+
+    @Test
+    public void testMatchFileId() {
+        final GlobMatcher foo = GlobMatcher.compile("foo", false);
+
+        assertFalse(MatcherUtil.match((GlobMatcher) null, 1, "foo"));
+
+        MatcherUtil.clearCache();
+        assertTrue(MatcherUtil.match(foo, 1, "dir/foo"));
+        assertFalse(MatcherUtil.match(foo, 2, "dir/bar"));
+        assertTrue(MatcherUtil.match(foo, 1, "dir/renamed"));
+        assertFalse(MatcherUtil.match(foo, "dir/renamed"));
+        assertEquals(0.25, MatcherUtil.getCacheHitRate(), 0.001);
+
+        MatcherUtil.clearCache();
+        assertFalse(MatcherUtil.match(foo, 1, "dir/renamed"));
+    }
+
     @Test
     public void testMatchAllParts() {
         final String[] partsA = new String[]{"foo"};
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class RelativePathTest extends Common<RelativePath> {
+
+    @Test
+    public void testGetFullPath() {
+        assertEquals("/project/src", RelativePath.getFullPath("/project/src", false));
+        assertEquals("/project/src/", RelativePath.getFullPath("/project/src", true));
+        assertEquals("/project/src/", RelativePath.getFullPath("/project/src/", true));
+    }
+
+    @Test
+    public void testCreate() {
+        final String fullPath = RelativePath.getFullPath("/project/src/Foo.java", false);
+
+        RelativePath path = RelativePath.create(fullPath, "/project");
+        assertNotNull(path);
+        assertEquals("src/Foo.java", path.toString());
+        assertEquals(12, path.length());
+        assertEquals('s', path.charAt(0));
+
+        path = RelativePath.create(fullPath, "/project/src");
+        assertNotNull(path);
+        assertEquals("Foo.java", path.toString());
+        assertEquals(".java", path.subSequence(3, 8).toString());
+
+        path = RelativePath.create(fullPath, "/other");
+        assertNotNull(path);
+        assertEquals("project/src/Foo.java", path.toString());
+
+        assertNull(RelativePath.create(fullPath, fullPath));
+        assertNull(RelativePath.create(RelativePath.getFullPath("/project", true), "/project"));
+    }
+
+    @Test
+    public void testEquals() {
+        final RelativePath a = RelativePath.create("/a/src/Foo.java", "/a");
+        final RelativePath b = RelativePath.create("/b/src/Foo.java", "/b");
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals("src/Foo.java".hashCode(), a.hashCode());
+    }
+}